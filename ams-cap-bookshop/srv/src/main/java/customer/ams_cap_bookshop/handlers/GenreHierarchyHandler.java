@@ -0,0 +1,85 @@
+package customer.ams_cap_bookshop.handlers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.sap.cds.ql.Delete;
+import com.sap.cds.ql.Insert;
+import com.sap.cds.ql.Select;
+import com.sap.cds.services.cds.CqnService;
+import com.sap.cds.services.handler.EventHandler;
+import com.sap.cds.services.handler.annotations.After;
+import com.sap.cds.services.handler.annotations.ServiceName;
+import com.sap.cds.services.persistence.PersistenceService;
+import com.sap.cds.services.runtime.CdsRuntime;
+
+import cds.gen.sap.capire.bookshop.GenreHierarchy;
+import cds.gen.sap.capire.bookshop.GenreHierarchy_;
+import cds.gen.sap.capire.bookshop.Genres;
+import cds.gen.sap.capire.bookshop.Genres_;
+
+/**
+ * Maintains the GenreHierarchy closure table, which backs the GenreTree AMS attribute. The closure is rebuilt on
+ * startup and in the same transaction as every change of Genres, so a restriction like {@code GenreTree IN
+ * ('Fiction')} always matches the current hierarchy.
+ */
+@Component
+@ServiceName(PersistenceService.DEFAULT_NAME)
+public class GenreHierarchyHandler implements EventHandler {
+	private static final Logger LOG = LoggerFactory.getLogger(GenreHierarchyHandler.class);
+
+	@Autowired
+	private PersistenceService db;
+
+	@Autowired
+	private CdsRuntime runtime;
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void initialize() {
+		runtime.requestContext().systemUser().run(context -> {
+			runtime.changeSetContext().run(changeSet -> {
+				refresh();
+			});
+		});
+	}
+
+	@After(event = { CqnService.EVENT_CREATE, CqnService.EVENT_UPSERT, CqnService.EVENT_UPDATE,
+			CqnService.EVENT_DELETE }, entity = Genres_.CDS_NAME)
+	public void refresh() {
+		List<Genres> genres = db.run(Select.from(Genres_.class).columns(g -> g.ID(), g -> g.parent_ID()))
+				.listOf(Genres.class);
+		Map<Integer, Integer> parentIds = new HashMap<>();
+		genres.forEach(genre -> parentIds.put(genre.getId(), genre.getParentId()));
+
+		List<GenreHierarchy> closure = new ArrayList<>();
+		for (Genres genre : genres) {
+			Set<Integer> visited = new HashSet<>();
+			Integer ancestorId = genre.getId();
+			for (int depth = 0; ancestorId != null && visited.add(ancestorId); depth++) {
+				GenreHierarchy entry = GenreHierarchy.create();
+				entry.setDescendantId(genre.getId());
+				entry.setAncestorId(ancestorId);
+				entry.setDepth(depth);
+				closure.add(entry);
+				ancestorId = parentIds.get(ancestorId);
+			}
+		}
+
+		db.run(Delete.from(GenreHierarchy_.class));
+		if (!closure.isEmpty()) {
+			db.run(Insert.into(GenreHierarchy_.class).entries(closure));
+		}
+		LOG.debug("Refreshed genre hierarchy with {} entries for {} genres", closure.size(), genres.size());
+	}
+}
@@ -0,0 +1,130 @@
+package customer.ams_cap_bookshop.handlers;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import com.sap.cds.ql.Select;
+import com.sap.cds.ql.Update;
+import com.sap.cds.services.changeset.ChangeSetContext;
+import com.sap.cds.services.changeset.ChangeSetListener;
+import com.sap.cds.services.outbox.OutboxService;
+import com.sap.cds.services.persistence.PersistenceService;
+import com.sap.cds.services.runtime.CdsRuntime;
+
+import cds.gen.catalogservice.Books;
+import cds.gen.catalogservice.Books_;
+import cds.gen.catalogservice.CatalogService;
+import cds.gen.catalogservice.OrderedBook;
+import cds.gen.catalogservice.OrderedBookContext;
+
+/**
+ * Decreases the stock of books for submitted orders, coalescing the orders for the same book within one ChangeSet, and
+ * emits the OrderedBook events of the orders through CAP's persistent outbox in the same transaction.
+ *
+ * <p>
+ * The first order for a book in a ChangeSet reads the stock with a row lock. Further orders for the book in the same
+ * ChangeSet, e.g. from one OData $batch change set, compute their stock from the locked value and the quantities
+ * ordered so far. The stock is decreased by the total quantity with a single update before the ChangeSet closes, so a
+ * batch of orders for a book needs two statements instead of two per order, and concurrent ChangeSets for the same
+ * book are serialized by the row lock.
+ *
+ * <p>
+ * All statements run in the transaction of the ChangeSet of the caller. When the ChangeSet is cancelled or the update
+ * fails, the stock update and the events of all its orders are rolled back together with the rest of the request.
+ * Orders of different ChangeSets are never combined, so they keep their own tenant and user.
+ */
+@Component
+public class StockUpdateBatcher {
+
+	@Autowired
+	private PersistenceService db;
+
+	@Autowired
+	private CdsRuntime runtime;
+
+	@Autowired
+	private CatalogService catalogService;
+
+	// the outbox stores the events in the current transaction and emits them after its commit, in order
+	@Autowired
+	@Qualifier(OutboxService.PERSISTENT_ORDERED_NAME)
+	private OutboxService outbox;
+
+	private final ConcurrentMap<ChangeSetContext, ChangeSetOrders> openChangeSets = new ConcurrentHashMap<>();
+
+	/**
+	 * Decrease the stock of the ordered book and enqueue the event of the order in the current ChangeSet, or in a new
+	 * one if there is no current ChangeSet
+	 *
+	 * @param orderedBook the order, emitted as OrderedBook event once the stock update is committed
+	 * @return the stock of the book after this order
+	 */
+	public Integer decreaseStock(OrderedBook orderedBook) {
+		ChangeSetContext current = ChangeSetContext.getCurrent();
+		if (current == null) {
+			return runtime.changeSetContext().run(changeSet -> decreaseStock(changeSet, orderedBook));
+		}
+		return decreaseStock(current, orderedBook);
+	}
+
+	private Integer decreaseStock(ChangeSetContext changeSet, OrderedBook orderedBook) {
+		ChangeSetOrders orders = openChangeSets.computeIfAbsent(changeSet, c -> {
+			ChangeSetOrders created = new ChangeSetOrders();
+			c.register(new ChangeSetListener() {
+				@Override
+				public void beforeClose() {
+					openChangeSets.remove(c);
+					if (!c.isMarkedForCancel()) {
+						created.stocks.forEach(StockUpdateBatcher.this::writeStock);
+					}
+				}
+
+				@Override
+				public void afterClose(boolean completed) {
+					openChangeSets.remove(c);
+				}
+			});
+			return created;
+		});
+
+		BookStock stock = orders.stocks.computeIfAbsent(orderedBook.getBook(), this::lockStock);
+		stock.ordered += orderedBook.getQuantity();
+
+		OrderedBookContext event = OrderedBookContext.create();
+		event.setData(orderedBook);
+		outbox.outboxed(catalogService).emit(event);
+
+		return stock.initial != null ? stock.initial - stock.ordered : null;
+	}
+
+	private BookStock lockStock(String bookId) {
+		// the lock keeps concurrent ChangeSets from ordering the book until this one is closed
+		Books book = db.run(Select.from(Books_.class).columns(b -> b.stock()).byId(bookId).lock()).single(Books.class);
+		return new BookStock(book.getStock());
+	}
+
+	private void writeStock(String bookId, BookStock stock) {
+		int total = stock.ordered;
+		db.run(Update.entity(Books_.class).byId(bookId).set(b -> b.stock(), s -> s.minus(total)));
+	}
+
+	private static class ChangeSetOrders {
+		// a ChangeSet is used by one thread at a time
+		private final Map<String, BookStock> stocks = new HashMap<>();
+	}
+
+	private static class BookStock {
+		private final Integer initial;
+		private int ordered;
+
+		BookStock(Integer initial) {
+			this.initial = initial;
+		}
+	}
+}
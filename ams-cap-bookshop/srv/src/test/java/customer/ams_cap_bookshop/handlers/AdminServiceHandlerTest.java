@@ -93,4 +93,14 @@ public class AdminServiceHandlerTest {
         // role restricted to Fantasy genre (genre_ID = 13) and Mystery genre (genre_ID = 16)
         assertTrue(result.stream().allMatch(row -> (int) row.get("genre_ID") == 13 || (int) row.get("genre_ID") == 16));
     }
+
+    @Test
+    @WithMockUser(username = "stock-manager-fiction-tree")
+    void getBooksAsStockManagerFictionTree() {
+        Result result = adminService.run(Select.from(BOOKS));
+        assertEquals(true, result.rowCount() > 0);
+
+        // role restricted to Fiction (genre_ID = 10) and its sub-genres (genre_ID 11 to 19)
+        assertTrue(result.stream().allMatch(row -> (int) row.get("genre_ID") >= 10 && (int) row.get("genre_ID") <= 19));
+    }
 }
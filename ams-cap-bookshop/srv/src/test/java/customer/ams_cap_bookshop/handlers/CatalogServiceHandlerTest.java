@@ -1,42 +1,54 @@
 package customer.ams_cap_bookshop.handlers;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
-import java.util.stream.Stream;
-
-import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+
+import com.sap.cds.ql.Select;
 
 import cds.gen.catalogservice.Books;
+import cds.gen.catalogservice.Books_;
+import cds.gen.catalogservice.CatalogService;
+import cds.gen.catalogservice.ListOfBooks;
+import cds.gen.catalogservice.ListOfBooks_;
 
+@SpringBootTest
 class CatalogServiceHandlerTest {
+	private static final String WUTHERING_HEIGHTS = "aeeda49f-72f2-4880-be27-a513b2e53040"; // stock 12
+	private static final String ELEONORA = "7756b725-cefc-43a2-a3c8-0c9104a349b8"; // stock 555
 
-	private CatalogServiceHandler handler = new CatalogServiceHandler();
-	private Books book = Books.create();
-
-	@BeforeEach
-	public void prepareBook() {
-		book.setTitle("title");
-	}
+	@Autowired
+	private CatalogService catalogService;
 
 	@Test
+	@WithMockUser(username = "user")
 	void testDiscount() {
-		book.setStock(500);
-		handler.discountBooks(Stream.of(book));
-		assertEquals("title (discounted)", book.getTitle());
+		Books book = catalogService.run(Select.from(Books_.class).byId(ELEONORA)).single(Books.class);
+		assertEquals("Eleonora", book.getTitle());
+		assertEquals("Eleonora (discounted)", book.getDisplayTitle());
+		assertTrue(book.getDiscounted());
 	}
 
 	@Test
+	@WithMockUser(username = "user")
 	void testNoDiscount() {
-		book.setStock(100);
-		handler.discountBooks(Stream.of(book));
-		assertEquals("title", book.getTitle());
+		Books book = catalogService.run(Select.from(Books_.class).byId(WUTHERING_HEIGHTS)).single(Books.class);
+		assertEquals("Wuthering Heights", book.getTitle());
+		assertEquals("Wuthering Heights", book.getDisplayTitle());
+		assertFalse(book.getDiscounted());
 	}
 
 	@Test
-	void testNoStockAvailable() {
-		handler.discountBooks(Stream.of(book));
-		assertEquals("title", book.getTitle());
+	@WithMockUser(username = "user")
+	void testDiscountInList() {
+		ListOfBooks book = catalogService.run(Select.from(ListOfBooks_.class).byId(ELEONORA))
+				.single(ListOfBooks.class);
+		assertEquals("Eleonora", book.getTitle());
+		assertEquals("Eleonora (discounted)", book.getDisplayTitle());
 	}
-
 }
@@ -0,0 +1,175 @@
+package customer.ams_cap_bookshop.handlers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import com.sap.cds.ql.Select;
+import com.sap.cds.services.handler.EventHandler;
+import com.sap.cds.services.handler.annotations.On;
+import com.sap.cds.services.handler.annotations.ServiceName;
+import com.sap.cds.services.persistence.PersistenceService;
+import com.sap.cds.services.runtime.CdsRuntime;
+
+import cds.gen.catalogservice.Books;
+import cds.gen.catalogservice.Books_;
+import cds.gen.catalogservice.CatalogService_;
+import cds.gen.catalogservice.OrderedBook;
+import cds.gen.catalogservice.OrderedBookContext;
+
+@SpringBootTest
+@Import(StockUpdateBatcherTest.OrderedBookListener.class)
+class StockUpdateBatcherTest {
+	private static final String JANE_EYRE = "b0056977-4cf5-46a2-ab14-6409ee2e0df1";
+
+	@Autowired
+	private StockUpdateBatcher batcher;
+
+	@Autowired
+	private PersistenceService db;
+
+	@Autowired
+	private OrderedBookListener listener;
+
+	@Autowired
+	private CdsRuntime runtime;
+
+	@Test
+	void concurrentOrdersReceiveConsecutiveStocks() throws Exception {
+		int initialStock = readStock();
+		int orders = 16;
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<Integer>> results = new ArrayList<>();
+		for (int i = 0; i < orders; i++) {
+			results.add(executor.submit(() -> runtime.requestContext().systemUser()
+					.run(ctx -> batcher.decreaseStock(order(1, "concurrent")))));
+		}
+
+		Set<Integer> stocks = new TreeSet<>();
+		for (Future<Integer> result : results) {
+			stocks.add(result.get());
+		}
+		executor.shutdown();
+
+		// every order sees the stock after its own decrement, the row lock serializes the change sets
+		Set<Integer> expected = IntStream.rangeClosed(1, orders).mapToObj(i -> initialStock - i)
+				.collect(Collectors.toCollection(TreeSet::new));
+		assertEquals(expected, stocks);
+		assertEquals(initialStock - orders, readStock());
+		// one OrderedBook event per order, emitted by the outbox after the commit of the stock update
+		assertEquals(orders, awaitEvents("concurrent", orders).size());
+	}
+
+	@Test
+	void eventIsEmittedAfterCommit() throws Exception {
+		runtime.requestContext().systemUser().run(ctx -> batcher.decreaseStock(order(2, "single")));
+
+		List<OrderedBook> events = awaitEvents("single", 1);
+		assertEquals(1, events.size());
+		assertEquals(JANE_EYRE, events.get(0).getBook());
+		assertEquals(2, events.get(0).getQuantity());
+	}
+
+	@Test
+	void ordersInOneChangeSetAreCoalesced() throws Exception {
+		int initialStock = readStock();
+
+		List<Integer> stocks = runtime.requestContext().systemUser().run(ctx -> runtime.changeSetContext()
+				.run(changeSet -> List.of(batcher.decreaseStock(order(1, "coalesced")),
+						batcher.decreaseStock(order(2, "coalesced")), batcher.decreaseStock(order(3, "coalesced")))));
+
+		assertEquals(List.of(initialStock - 1, initialStock - 3, initialStock - 6), stocks);
+		assertEquals(initialStock - 6, readStock());
+		assertEquals(3, awaitEvents("coalesced", 3).size());
+	}
+
+	@Test
+	void cancelledChangeSetRollsBackStockUpdate() {
+		int initialStock = readStock();
+
+		Integer stock = runtime.requestContext().systemUser().run(ctx -> runtime.changeSetContext()
+				.run(changeSet -> {
+					Integer decreased = batcher.decreaseStock(order(5, "cancelled"));
+					changeSet.markForCancel();
+					return decreased;
+				}));
+
+		assertEquals(initialStock - 5, stock);
+		// the stock update and the event are part of the cancelled transaction
+		assertEquals(initialStock, readStock());
+		assertTrue(listener.eventsOf("cancelled").isEmpty());
+	}
+
+	@Test
+	void failingRequestRollsBackStockUpdate() {
+		int initialStock = readStock();
+
+		assertThrows(RuntimeException.class, () -> runtime.requestContext().systemUser()
+				.run(ctx -> runtime.changeSetContext().run(changeSet -> {
+					batcher.decreaseStock(order(5, "failed"));
+					throw new IllegalStateException("request failed after the order");
+				})));
+
+		assertEquals(initialStock, readStock());
+		assertTrue(listener.eventsOf("failed").isEmpty());
+	}
+
+	private static OrderedBook order(int quantity, String buyer) {
+		OrderedBook orderedBook = OrderedBook.create();
+		orderedBook.setBook(JANE_EYRE);
+		orderedBook.setQuantity(quantity);
+		orderedBook.setBuyer(buyer);
+		return orderedBook;
+	}
+
+	/**
+	 * Wait until the outbox has emitted the expected number of events of the buyer, or for at most ten seconds
+	 */
+	private List<OrderedBook> awaitEvents(String buyer, int expected) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10_000;
+		List<OrderedBook> events = listener.eventsOf(buyer);
+		while (events.size() < expected && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+			events = listener.eventsOf(buyer);
+		}
+		return events;
+	}
+
+	private int readStock() {
+		return runtime.requestContext().systemUser().run(ctx -> db
+				.run(Select.from(Books_.class).columns(b -> b.stock()).byId(JANE_EYRE)).single(Books.class)
+				.getStock());
+	}
+
+	@ServiceName(CatalogService_.CDS_NAME)
+	static class OrderedBookListener implements EventHandler {
+		private final List<OrderedBook> events = new CopyOnWriteArrayList<>();
+
+		@On(event = OrderedBookContext.CDS_NAME)
+		public void onOrderedBook(OrderedBookContext context) {
+			events.add(context.getData());
+			context.setCompleted();
+		}
+
+		List<OrderedBook> eventsOf(String buyer) {
+			return events.stream().filter(event -> buyer.equals(event.getBuyer())).toList();
+		}
+	}
+}
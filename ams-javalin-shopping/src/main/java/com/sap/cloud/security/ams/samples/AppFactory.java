@@ -2,15 +2,23 @@ package com.sap.cloud.security.ams.samples;
 
 import com.sap.cloud.security.ams.samples.auth.AuthHandler;
 import com.sap.cloud.security.ams.samples.auth.Role;
+import com.sap.cloud.security.ams.samples.db.ColumnarOrderStore;
+import com.sap.cloud.security.ams.samples.db.H2OrderStore;
+import com.sap.cloud.security.ams.samples.db.InMemoryOrderStore;
+import com.sap.cloud.security.ams.samples.db.OrderStore;
 import com.sap.cloud.security.ams.samples.db.SimpleDatabase;
 import com.sap.cloud.security.ams.samples.model.HealthStatus;
 import com.sap.cloud.security.ams.samples.service.OrdersService;
 import com.sap.cloud.security.ams.samples.service.PrivilegesService;
 import com.sap.cloud.security.ams.samples.service.ProductsService;
 import io.javalin.Javalin;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -24,23 +32,68 @@ import static io.javalin.apibuilder.ApiBuilder.*;
 public class AppFactory {
     private static final Logger LOG = LoggerFactory.getLogger(AppFactory.class);
     private static final AtomicBoolean isReady = new AtomicBoolean(false);
+    private static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
 
     /**
      * Create and configure the Javalin application
      *
      * @param authHandler The authentication handler to use
-     * @return Configured Javalin application
+     * @return Configured Javalin application, which closes its database when it stops
      */
     public static Javalin createApp(AuthHandler authHandler) {
-        LOG.info("Creating Javalin application...");
+        return createApp(authHandler, useVirtualThreads());
+    }
 
-        SimpleDatabase database = new SimpleDatabase();
+    /**
+     * Create and configure the Javalin application with an explicit request
+     * threading mode, ignoring the VIRTUAL_THREADS configuration, e.g. to compare
+     * both modes
+     *
+     * @param authHandler    The authentication handler to use
+     * @param virtualThreads whether requests are handled on virtual threads
+     * @return Configured Javalin application, which closes its database when it stops
+     */
+    public static Javalin createApp(AuthHandler authHandler, boolean virtualThreads) {
+        return createApp(authHandler, createDatabase(), true, virtualThreads);
+    }
+
+    /**
+     * Create and configure the Javalin application on the given database
+     *
+     * @param authHandler The authentication handler to use
+     * @param database    The database to serve the data from
+     * @return Configured Javalin application
+     */
+    public static Javalin createApp(AuthHandler authHandler, SimpleDatabase database) {
+        return createApp(authHandler, database, false, useVirtualThreads());
+    }
+
+    /**
+     * @param closeDatabase  whether the database belongs to the application and is
+     *                       closed when the server stops
+     * @param virtualThreads whether requests are handled on virtual threads
+     */
+    private static Javalin createApp(AuthHandler authHandler, SimpleDatabase database, boolean closeDatabase,
+            boolean virtualThreads) {
+        LOG.info("Creating Javalin application...");
 
         ProductsService productsService = new ProductsService(database, authHandler);
         OrdersService ordersService = new OrdersService(database, authHandler);
         PrivilegesService privilegesService = new PrivilegesService(authHandler);
 
+        MeterRegistry meterRegistry = authHandler.getMetrics().getRegistry();
+
         Javalin app = Javalin.create(config -> {
+            // Handle requests on virtual threads, so blocking work such as token validation with
+            // JWKS fetches does not occupy a pooled platform thread. Javalin falls back to platform
+            // threads on JVMs without virtual threads (before Java 21).
+            config.concurrency.useVirtualThreads = virtualThreads;
+
+            if (closeDatabase) {
+                // e.g. on app.stop() in the shutdown hook of the main class
+                config.events.serverStopped(database::close);
+            }
+
             // Request lifecycle handlers
             config.routes.beforeMatched(authHandler);
             config.routes.after(authHandler::clear);
@@ -56,6 +109,13 @@ public class AppFactory {
                     }
                 });
 
+                // Metrics endpoint in Prometheus text format, the scraper authenticates with a token,
+                // e.g. of a technical user
+                if (meterRegistry instanceof PrometheusMeterRegistry prometheus) {
+                    get("/metrics", ctx -> ctx.contentType(PROMETHEUS_CONTENT_TYPE).result(prometheus.scrape()),
+                            Role.AUTHENTICATED);
+                }
+
                 // API endpoints  
                 get("/privileges", privilegesService.getPrivileges(), Role.AUTHENTICATED);
                 get("/products", productsService.getProducts(), Role.READ_PRODUCTS);
@@ -72,15 +132,71 @@ public class AppFactory {
         });
 
         // Wait up to 30s for AMS to become ready
-        authHandler.getAmsClient().whenReady().orTimeout(30, TimeUnit.SECONDS).thenRun(() -> {
+        CompletableFuture<Void> amsReady = authHandler.getAmsClient().whenReady().orTimeout(30, TimeUnit.SECONDS)
+                .exceptionally(ex -> {
+                    LOG.error("AMS failed to become ready within the timeout", ex);
+                    System.exit(1);
+                    return null;
+                });
+        // Wait up to 30s for the token keys, which are otherwise fetched by the first request
+        CompletableFuture<Void> keysReady = authHandler.whenKeysReady().copy().orTimeout(30, TimeUnit.SECONDS)
+                .exceptionally(ex -> {
+                    LOG.warn("Token keys could not be prefetched within the timeout, continuing without them");
+                    return null;
+                });
+        CompletableFuture.allOf(amsReady, keysReady).thenRun(() -> {
             isReady.set(true);
             LOG.info("AMS is ready, application is now ready to serve requests");
-        }).exceptionally(ex -> {
-            LOG.error("AMS failed to become ready within the timeout", ex);
-            System.exit(1);
-            return null;
         });
 
         return app;
     }
-}
\ No newline at end of file
+
+    /**
+     * Create the database. If a data directory is configured via the DATA_DIR
+     * environment variable or the db.data-dir system property, the database is
+     * persistent and writes a snapshot when it is closed. The database is closed
+     * when the server of its application stops, which also closes the order store.
+     */
+    private static SimpleDatabase createDatabase() {
+        String dataDir = ConfigValues.getValue("DATA_DIR", "db.data-dir", "");
+        SimpleDatabase database;
+        if (dataDir.isEmpty()) {
+            database = new SimpleDatabase(createOrderStore());
+        } else {
+            LOG.info("Using persistent database in {}", dataDir);
+            database = new SimpleDatabase(createOrderStore(), Path.of(dataDir));
+        }
+        return database;
+    }
+
+    /**
+     * Create the order store configured via the ORDER_STORE environment variable or
+     * the orders.store system property: "memory" (default), "columnar" or "h2"
+     */
+    private static OrderStore createOrderStore() {
+        String storeType = ConfigValues.getValue("ORDER_STORE", "orders.store", "memory");
+
+        switch (storeType) {
+            case "h2":
+                LOG.info("Using embedded H2 order store");
+                return H2OrderStore.createInMemory();
+            case "columnar":
+                LOG.info("Using columnar in-memory order store");
+                return new ColumnarOrderStore();
+            case "memory":
+                return new InMemoryOrderStore();
+            default:
+                throw new IllegalArgumentException("Unknown order store type: " + storeType);
+        }
+    }
+
+    /**
+     * Whether requests should be handled on virtual threads, configured via the
+     * VIRTUAL_THREADS environment variable or the server.virtual-threads system
+     * property (default: false)
+     */
+    private static boolean useVirtualThreads() {
+        return Boolean.parseBoolean(ConfigValues.getValue("VIRTUAL_THREADS", "server.virtual-threads", "false"));
+    }
+}
@@ -0,0 +1,46 @@
+package com.sap.cloud.security.ams.samples;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads configuration values from an environment variable or, if it is not set,
+ * from a system property, as there is no configuration framework used.
+ */
+public final class ConfigValues {
+    private static final Logger LOG = LoggerFactory.getLogger(ConfigValues.class);
+
+    private ConfigValues() {
+    }
+
+    /**
+     * @return the value of the environment variable, else of the system property,
+     *         else the default value
+     */
+    public static String getValue(String envName, String propertyName, String defaultValue) {
+        String value = System.getenv(envName);
+        if (value == null || value.isEmpty()) {
+            value = System.getProperty(propertyName);
+        }
+        return value == null || value.isEmpty() ? defaultValue : value;
+    }
+
+    /**
+     * @return the numeric value of the environment variable, else of the system
+     *         property, else the default value, which is also used if the value is
+     *         not a number
+     */
+    public static long getLongValue(String envName, String propertyName, long defaultValue) {
+        String value = getValue(envName, propertyName, null);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            LOG.warn("Invalid value for {}: {}, using default {}", envName, value, defaultValue);
+            return defaultValue;
+        }
+    }
+}
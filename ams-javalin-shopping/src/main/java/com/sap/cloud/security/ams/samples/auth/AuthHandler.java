@@ -6,45 +6,133 @@ import com.sap.cloud.security.ams.api.App2AppFlow;
 import com.sap.cloud.security.ams.api.AuthorizationManagementService;
 import com.sap.cloud.security.ams.api.PolicyName;
 import com.sap.cloud.security.ams.api.Principal;
+import com.sap.cloud.security.ams.samples.ConfigValues;
 import com.sap.cloud.security.ams.core.SciAuthorizationsProvider;
 import com.sap.cloud.security.config.Environments;
+import com.sap.cloud.security.config.OAuth2ServiceConfiguration;
 import com.sap.cloud.security.servlet.IasTokenAuthenticator;
 import com.sap.cloud.security.servlet.TokenAuthenticationResult;
 import com.sap.cloud.security.servlet.TokenAuthenticator;
 import com.sap.cloud.security.token.SecurityContext;
+import com.sap.cloud.security.token.Token;
+import com.sap.cloud.security.xsuaa.client.DefaultOAuth2TokenKeyService;
+import com.sap.cloud.security.xsuaa.client.DefaultOidcConfigurationService;
+import com.sap.cloud.security.xsuaa.client.OAuth2ServiceException;
+import com.sap.cloud.security.xsuaa.client.OidcConfigurationService;
 import io.javalin.http.Context;
 import io.javalin.http.ForbiddenResponse;
 import io.javalin.http.Handler;
 import io.javalin.http.UnauthorizedResponse;
 import io.javalin.security.RouteRole;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.net.URI;
+import java.time.Duration;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import static com.sap.cloud.security.ams.api.Principal.fromSecurityContext;
 
 /**
  * Javalin handler that showcases authentication and authorization using SAP BTP
  * cloud security and AMS libraries
+ *
+ * <p>
+ * The Authorizations of a request are resolved once and reused by all handlers of
+ * that request. Optionally, they are also cached across requests per principal
+ * token, keyed by its SHA-256 hash, see {@link #createAuthorizationsCache()}. Validated tokens are cached
+ * until they expire, see {@link #createTokenCache()}. The token keys are
+ * prefetched and refreshed in the background by a {@link JwksKeyManager}, see
+ * {@link #whenKeysReady()}. Token validation and the
+ * resolution of Authorizations emit {@link AuthorizationEvents} for JFR.
  */
 public class AuthHandler implements Handler {
     private static final Logger LOG = LoggerFactory.getLogger(AuthHandler.class);
+    private static final String CLIENT_CERTIFICATE_HEADER = "x-forwarded-client-cert";
     private TokenAuthenticator authenticator;
+    private JwksKeyManager keyManager;
+    private CompletableFuture<Void> keysReady = CompletableFuture.completedFuture(null);
+    protected final AuthorizationMetrics metrics;
     protected final AuthorizationManagementService ams;
     protected final SciAuthorizationsProvider<ShoppingAuthorizations> authProvider;
+    private final BoundedCache<String, ShoppingAuthorizations> authorizationsCache;
+    private final TokenCache tokenCache;
+    private final ThreadLocal<RequestAuthorizations> requestAuthorizations = new ThreadLocal<>();
 
     public AuthHandler() {
+        this.metrics = this.createMetrics();
         this.setupAuthentication();
         this.ams = this.createAmsClient();
         this.authProvider = this.createAuthProvider();
+        this.authorizationsCache = this.createAuthorizationsCache();
+        this.tokenCache = this.createTokenCache();
+        if (tokenCache != null) {
+            metrics.registerCache("tokens", tokenCache);
+        }
     }
 
+    /**
+     * Set up token validation. The token keys are kept by a {@link JwksKeyManager}
+     * that refreshes them in an interval configured via the environment variable
+     * JWKS_REFRESH_SECONDS (or system property jwks.refresh-seconds), default 300.
+     */
     protected void setupAuthentication() {
-        this.authenticator = new IasTokenAuthenticator().withServiceConfiguration(
-                Environments.getCurrent().getIasConfiguration()
-        );
+        OAuth2ServiceConfiguration iasConfiguration = Environments.getCurrent().getIasConfiguration();
+        long refreshSeconds = ConfigValues.getLongValue("JWKS_REFRESH_SECONDS", "jwks.refresh-seconds", 300);
+        this.keyManager = new JwksKeyManager(new DefaultOAuth2TokenKeyService(),
+                Duration.ofSeconds(Math.max(1, refreshSeconds)));
+        this.authenticator = new IasTokenAuthenticator()
+                .withServiceConfiguration(iasConfiguration)
+                .withOAuth2TokenKeyService(keyManager);
+        if (iasConfiguration != null && iasConfiguration.getUrl() != null) {
+            this.keysReady = keyManager.prefetch(() -> getTokenKeysUri(iasConfiguration),
+                    getTokenKeysParams(iasConfiguration));
+        }
+    }
+
+    /**
+     * Token keys endpoint of the identity service instance, retrieved by OpenID
+     * Connect discovery like the token validation does
+     */
+    protected URI getTokenKeysUri(OAuth2ServiceConfiguration iasConfiguration) throws OAuth2ServiceException {
+        URI discoveryUri = iasConfiguration.getUrl().resolve(OidcConfigurationService.DISCOVERY_ENDPOINT_DEFAULT);
+        return new DefaultOidcConfigurationService().retrieveEndpoints(discoveryUri).getJwksUri();
+    }
+
+    /**
+     * Parameters of the token keys request for tokens that the application's own
+     * tenant issued to the application itself. Key sets for other tenants and
+     * clients are fetched on their first request and then kept up to date as well.
+     */
+    protected Map<String, String> getTokenKeysParams(OAuth2ServiceConfiguration iasConfiguration) {
+        Map<String, String> params = new HashMap<>();
+        params.put("x-app_tid", iasConfiguration.getProperty("app_tid"));
+        params.put("x-client_id", iasConfiguration.getClientId());
+        params.put("x-azp", iasConfiguration.getClientId());
+        return params;
+    }
+
+    /**
+     * @return future that completes once the token keys have been prefetched, or a
+     *         completed future if token validation does not use a
+     *         {@link JwksKeyManager}. The prefetch is retried until it succeeds.
+     */
+    public CompletableFuture<Void> whenKeysReady() {
+        return keysReady;
+    }
+
+    /**
+     * Create the authorization metrics, kept in a Prometheus registry that is
+     * exposed on GET /metrics
+     */
+    protected AuthorizationMetrics createMetrics() {
+        return new AuthorizationMetrics(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT));
     }
 
     protected AuthorizationManagementService createAmsClient() {
@@ -65,7 +153,8 @@ public class AuthHandler implements Handler {
     private static final Set<String> PRINCIPAL_PROPAGATION_APIS = Set.of("GetProducts", "ExternalOrder");
 
     private SciAuthorizationsProvider<ShoppingAuthorizations> createAuthProvider() {
-        return SciAuthorizationsProvider.create(ams, ShoppingAuthorizations::of)
+        return SciAuthorizationsProvider.create(ams,
+                authorizations -> ShoppingAuthorizations.of(authorizations, metrics))
                 .withApiMapper((String api, Principal principal) -> {
                     if (TECHNICAL_USER_APIS.contains(api)) {
                         return Set.of(PolicyName.ofSegments("internal", api));
@@ -82,10 +171,59 @@ public class AuthHandler implements Handler {
                 }, App2AppFlow.FILTERED_PRINCIPAL_PROPAGATION);
     }
 
+    /**
+     * Create the cache for Authorizations across requests, configured via the
+     * environment variables (or system properties):
+     * <ul>
+     * <li>AUTHORIZATIONS_CACHE_TTL_SECONDS (authorizations.cache.ttl-seconds): time
+     * to live of an entry, 0 (default) disables the cache</li>
+     * <li>AUTHORIZATIONS_CACHE_MAX_SIZE (authorizations.cache.max-size): maximum
+     * number of cached principals, default 10000</li>
+     * </ul>
+     * Changes of policy assignments take effect for a cached principal once its
+     * entry expires, so the time to live bounds how long stale Authorizations are
+     * used.
+     *
+     * @return the cache or null if caching across requests is disabled
+     */
+    protected BoundedCache<String, ShoppingAuthorizations> createAuthorizationsCache() {
+        long ttlSeconds = ConfigValues.getLongValue("AUTHORIZATIONS_CACHE_TTL_SECONDS",
+                "authorizations.cache.ttl-seconds", 0);
+        if (ttlSeconds <= 0) {
+            return null;
+        }
+
+        int maxSize = (int) ConfigValues.getLongValue("AUTHORIZATIONS_CACHE_MAX_SIZE",
+                "authorizations.cache.max-size", 10_000);
+        LOG.info("Caching Authorizations for up to {} principals for {}s", maxSize, ttlSeconds);
+        return new BoundedCache<>(maxSize, Duration.ofSeconds(ttlSeconds));
+    }
+
+    /**
+     * Create the cache of validated tokens, configured via the environment variable
+     * TOKEN_CACHE_MAX_SIZE (or system property token.cache.max-size): maximum number
+     * of cached tokens, default 10000, 0 disables the cache. A token is cached until
+     * its exp claim, so repeated requests with the same token skip the signature
+     * verification.
+     *
+     * @return the cache or null if caching validated tokens is disabled
+     */
+    protected TokenCache createTokenCache() {
+        int maxSize = (int) ConfigValues.getLongValue("TOKEN_CACHE_MAX_SIZE", "token.cache.max-size", 10_000);
+        if (maxSize <= 0) {
+            return null;
+        }
+        return new TokenCache(maxSize);
+    }
+
     public AuthorizationManagementService getAmsClient() {
         return ams;
     }
 
+    public AuthorizationMetrics getMetrics() {
+        return metrics;
+    }
+
     @Override
     public void handle(Context ctx) {
         LOG.debug("Handling path: {}", ctx.path());
@@ -100,15 +238,55 @@ public class AuthHandler implements Handler {
     }
 
     protected void authenticate(Context ctx) {
-        TokenAuthenticationResult authenticationResult = authenticator.validateRequest(ctx.req(), ctx.res());
+        AuthorizationEvents.TokenValidation event = AuthorizationEvents.beginTokenValidation();
+        String cacheKey = tokenCacheKey(ctx);
+        Token cachedToken = cacheKey != null ? tokenCache.get(cacheKey) : null;
+        if (cachedToken != null) {
+            SecurityContext.setToken(cachedToken);
+            AuthorizationEvents.commit(event, true, true);
+            return;
+        }
+
+        TokenAuthenticationResult authenticationResult = validateRequest(ctx);
+        AuthorizationEvents.commit(event, authenticationResult.isAuthenticated(), false);
         if (!authenticationResult.isAuthenticated()) {
             LOG.warn("Authentication for route: {} failed: {}", ctx.path(),
                     authenticationResult.getUnauthenticatedReason());
             throw new UnauthorizedResponse();
         }
+        // only successfully validated tokens are cached
+        if (cacheKey != null && authenticationResult.getToken() != null) {
+            tokenCache.put(cacheKey, authenticationResult.getToken());
+        }
+    }
+
+    /**
+     * Validate the token of a request and set it in the SecurityContext. Only
+     * called if the token is not in the token cache.
+     */
+    protected TokenAuthenticationResult validateRequest(Context ctx) {
+        if (keyManager == null) {
+            return authenticator.validateRequest(ctx.req(), ctx.res());
+        }
+        // the token keys are only fetched inline if the key of the token is unknown
+        return keyManager.withKeyId(JwksKeyManager.keyIdOf(ctx.header("Authorization")),
+                () -> authenticator.validateRequest(ctx.req(), ctx.res()));
+    }
+
+    /**
+     * @return the cache key of the request's credentials or null if the token cache
+     *         is disabled or there is no token
+     */
+    private String tokenCacheKey(Context ctx) {
+        String authorization = ctx.header("Authorization");
+        if (tokenCache == null || authorization == null || authorization.isEmpty()) {
+            return null;
+        }
+        return TokenCache.keyOf(authorization, ctx.header(CLIENT_CERTIFICATE_HEADER));
     }
 
     private void authorize(Context ctx) {
+        long start = System.nanoTime();
         ShoppingAuthorizations authorizations = getAuthorizations();
 
         if (ctx.routeRoles().contains(Role.AUTHENTICATED) && SecurityContext.getToken() != null) {
@@ -122,7 +300,9 @@ public class AuthHandler implements Handler {
                 continue;
             }
 
-            if (!authorizations.checkRole(role).isDenied()) {
+            boolean granted = !authorizations.checkRole(role).isDenied();
+            metrics.recordRouteCheck(role, granted, System.nanoTime() - start);
+            if (granted) {
                 // full or conditional access granted: in the latter case, the filter condition
                 // needs to be handled inside the service handler
                 return;
@@ -139,10 +319,48 @@ public class AuthHandler implements Handler {
      * @return Authorizations instance
      */
     public ShoppingAuthorizations getAuthorizations() {
-        return authProvider.getAuthorizations(fromSecurityContext());
+        Token token = SecurityContext.getToken();
+
+        // the memo is bound to the token instance, so it can never leak into another request on this thread
+        RequestAuthorizations memo = requestAuthorizations.get();
+        if (memo != null && memo.token() == token) {
+            return memo.authorizations();
+        }
+
+        AuthorizationEvents.GetAuthorizations event = AuthorizationEvents.beginGetAuthorizations();
+        ShoppingAuthorizations authorizations;
+        try {
+            authorizations = resolveAuthorizations(token);
+        } catch (RuntimeException e) {
+            AuthorizationEvents.commit(event, "failed");
+            throw e;
+        }
+        AuthorizationEvents.commit(event, "resolved");
+        requestAuthorizations.set(new RequestAuthorizations(token, authorizations));
+        return authorizations;
     }
 
+    private ShoppingAuthorizations resolveAuthorizations(Token token) {
+        if (authorizationsCache == null || token == null) {
+            return authProvider.getAuthorizations(fromSecurityContext());
+        }
+
+        // the token value identifies the principal including the App2App flow it was issued for
+        String key = TokenCache.keyOf(token.getTokenValue(), null);
+        return authorizationsCache.computeIfAbsent(key, k -> authProvider.getAuthorizations(fromSecurityContext()));
+    }
+
+    /**
+     * Remove all thread-bound state of the request. Must run after every request,
+     * also on virtual threads, as the request memo and SecurityContext are
+     * ThreadLocals.
+     */
     public void clear(Context ctx) {
+        requestAuthorizations.remove();
+        AuthorizationEvents.clear();
         SecurityContext.clear();
     }
+
+    private record RequestAuthorizations(Token token, ShoppingAuthorizations authorizations) {
+    }
 }
@@ -0,0 +1,285 @@
+package com.sap.cloud.security.ams.samples.auth;
+
+import com.sap.cloud.security.ams.api.Decision;
+import com.sap.cloud.security.token.SecurityContext;
+import com.sap.cloud.security.token.Token;
+import com.sap.cloud.security.token.TokenClaims;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+/**
+ * Java Flight Recorder events for the authentication and authorization phases of
+ * a request, e.g. for a continuous recording in production:
+ *
+ * <pre>
+ * java -XX:StartFlightRecording=settings=default,maxage=1h,filename=shopping.jfr ...
+ * jfr print --categories "AMS Samples" shopping.jfr
+ * </pre>
+ *
+ * <p>
+ * The events are declared without stack traces. Their fields are only computed
+ * if the event is enabled and passes its threshold ({@link Event#shouldCommit()}),
+ * so without a recording an event costs little more than reading the clock. The
+ * principal is recorded as the first 8 bytes of an HMAC-SHA256 of its global
+ * user ID, which lets events of the same principal be correlated without
+ * recording personal data. The HMAC key is generated randomly per process, so
+ * the hash of a known user ID cannot be computed outside the process to find
+ * its events in a recording. As a consequence, hashes can only be correlated
+ * within the recordings of one process. The hash is computed once per token and
+ * thread.
+ */
+public final class AuthorizationEvents {
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final SecretKeySpec HMAC_KEY = new SecretKeySpec(randomKey(), HMAC_ALGORITHM);
+    private static final ThreadLocal<Mac> macs = ThreadLocal.withInitial(AuthorizationEvents::createMac);
+    private static final ThreadLocal<PrincipalHash> principalHashes = new ThreadLocal<>();
+
+    private AuthorizationEvents() {
+    }
+
+    @Name("com.sap.cloud.security.ams.samples.TokenValidation")
+    @Label("Token Validation")
+    @Description("Validation of the token of a request")
+    @Category({ "AMS Samples", "Authorization" })
+    @StackTrace(false)
+    public static class TokenValidation extends Event {
+        @Label("Principal Hash")
+        long principalHash;
+
+        @Label("Outcome")
+        String outcome;
+    }
+
+    @Name("com.sap.cloud.security.ams.samples.GetAuthorizations")
+    @Label("Get Authorizations")
+    @Description("Resolution of the Authorizations of the principal of a request")
+    @Category({ "AMS Samples", "Authorization" })
+    @StackTrace(false)
+    public static class GetAuthorizations extends Event {
+        @Label("Principal Hash")
+        long principalHash;
+
+        @Label("Outcome")
+        String outcome;
+    }
+
+    @Name("com.sap.cloud.security.ams.samples.CheckPrivilege")
+    @Label("Check Privilege")
+    @Description("Evaluation of an AMS privilege check")
+    @Category({ "AMS Samples", "Authorization" })
+    @StackTrace(false)
+    public static class CheckPrivilege extends Event {
+        @Label("Principal Hash")
+        long principalHash;
+
+        @Label("Privilege")
+        String privilege;
+
+        @Label("Outcome")
+        String outcome;
+    }
+
+    @Name("com.sap.cloud.security.ams.samples.DecisionVisit")
+    @Label("Decision Visit")
+    @Description("Conversion of the condition of a Decision, e.g. into an SQL condition")
+    @Category({ "AMS Samples", "Authorization" })
+    @StackTrace(false)
+    public static class DecisionVisit extends Event {
+        @Label("Principal Hash")
+        long principalHash;
+
+        @Label("Privilege")
+        String privilege;
+
+        @Label("Visitor")
+        String visitor;
+    }
+
+    @Name("com.sap.cloud.security.ams.samples.EntityFilter")
+    @Label("Entity Filter")
+    @Description("Authorization filtering of a set of entities by the condition of a Decision")
+    @Category({ "AMS Samples", "Authorization" })
+    @StackTrace(false)
+    public static class EntityFilter extends Event {
+        @Label("Principal Hash")
+        long principalHash;
+
+        @Label("Privilege")
+        String privilege;
+
+        @Label("Outcome")
+        String outcome;
+
+        @Label("Strategy")
+        String strategy;
+
+        @Label("Entities")
+        @Description("Number of entities that passed the filter")
+        long entities;
+
+        @Label("Condition Evaluations")
+        long evaluations;
+    }
+
+    public static TokenValidation beginTokenValidation() {
+        TokenValidation event = new TokenValidation();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * @param cached whether the token was taken from the cache of validated tokens
+     *               instead of being validated again
+     */
+    public static void commit(TokenValidation event, boolean authenticated, boolean cached) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.principalHash = authenticated ? principalHash() : 0;
+            event.outcome = !authenticated ? "unauthenticated" : cached ? "cached" : "authenticated";
+            event.commit();
+        }
+    }
+
+    public static GetAuthorizations beginGetAuthorizations() {
+        GetAuthorizations event = new GetAuthorizations();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * @param outcome e.g. "resolved" or "failed"
+     */
+    public static void commit(GetAuthorizations event, String outcome) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.principalHash = principalHash();
+            event.outcome = outcome;
+            event.commit();
+        }
+    }
+
+    public static CheckPrivilege beginCheckPrivilege() {
+        CheckPrivilege event = new CheckPrivilege();
+        event.begin();
+        return event;
+    }
+
+    public static void commit(CheckPrivilege event, Role role, Decision decision) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.principalHash = principalHash();
+            event.privilege = role.asPrivilege().toAuthority();
+            event.outcome = AuthorizationMetrics.outcome(decision);
+            event.commit();
+        }
+    }
+
+    public static DecisionVisit beginDecisionVisit() {
+        DecisionVisit event = new DecisionVisit();
+        event.begin();
+        return event;
+    }
+
+    public static void commit(DecisionVisit event, Role role, Class<?> visitor) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.principalHash = principalHash();
+            event.privilege = role.asPrivilege().toAuthority();
+            event.visitor = visitor.getSimpleName();
+            event.commit();
+        }
+    }
+
+    public static EntityFilter beginEntityFilter() {
+        EntityFilter event = new EntityFilter();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * @param strategy    how the condition was applied, e.g. "sql" or "dictionary"
+     * @param entities    number of entities that passed the filter
+     * @param evaluations number of times the condition was evaluated in Java
+     */
+    public static void commit(EntityFilter event, Role role, Decision decision, String strategy, long entities,
+            long evaluations) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.principalHash = principalHash();
+            event.privilege = role.asPrivilege().toAuthority();
+            event.outcome = AuthorizationMetrics.outcome(decision);
+            event.strategy = strategy;
+            event.entities = entities;
+            event.evaluations = evaluations;
+            event.commit();
+        }
+    }
+
+    /**
+     * Remove the principal hash memo of the current thread, see
+     * {@link AuthHandler#clear}
+     */
+    public static void clear() {
+        principalHashes.remove();
+    }
+
+    /**
+     * @return hash of the global user ID of the current principal or 0 if there is
+     *         no authenticated principal
+     */
+    static long principalHash() {
+        Token token = SecurityContext.getToken();
+        if (token == null) {
+            return 0;
+        }
+        // bound to the token instance like the request memo of the AuthHandler
+        PrincipalHash memo = principalHashes.get();
+        if (memo != null && memo.token() == token) {
+            return memo.hash();
+        }
+
+        String userId = token.getClaimAsString(TokenClaims.SAP_GLOBAL_SCIM_ID);
+        if (userId == null) {
+            userId = token.getClaimAsString(TokenClaims.SUBJECT);
+        }
+        long hash = userId == null ? 0 : hash(userId);
+        principalHashes.set(new PrincipalHash(token, hash));
+        return hash;
+    }
+
+    static long hash(String value) {
+        // doFinal resets the Mac of this thread for the next value
+        byte[] mac = macs.get().doFinal(value.getBytes(StandardCharsets.UTF_8));
+        return ByteBuffer.wrap(mac).getLong();
+    }
+
+    private static byte[] randomKey() {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        return key;
+    }
+
+    private static Mac createMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(HMAC_KEY);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(HMAC_ALGORITHM + " is not available", e);
+        }
+    }
+
+    private record PrincipalHash(Token token, long hash) {
+    }
+}
@@ -0,0 +1,133 @@
+package com.sap.cloud.security.ams.samples.auth;
+
+import com.sap.cloud.security.ams.api.Decision;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer meters for the AMS authorization of the shopping application.
+ *
+ * <ul>
+ * <li>{@value #DECISIONS}: timer per privilege and outcome (granted, denied,
+ * conditional) of each evaluated privilege check</li>
+ * <li>{@value #ROUTE_CHECKS}: timer per privilege and outcome of the route-level
+ * checks in the {@link AuthHandler}</li>
+ * <li>{@value #FILTER}: timer per strategy of the authorization filtering in GET
+ * /orders</li>
+ * <li>{@value #FILTER_EVALUATIONS}: histogram of the number of condition
+ * evaluations per filtered request</li>
+ * <li>{@value #CACHE_GETS}, {@value #CACHE_EVICTIONS}, {@value #CACHE_SIZE}:
+ * hits, misses, evictions and size per registered {@link BoundedCache}</li>
+ * </ul>
+ *
+ * Privileges are tagged as {@code action:resource}, e.g. {@code read:orders}.
+ * Each meter is registered on its first use and then looked up by its tags, so
+ * recording does not build meters on the request path.
+ */
+public class AuthorizationMetrics {
+    public static final String DECISIONS = "ams.authorization.decisions";
+    public static final String ROUTE_CHECKS = "ams.authorization.route";
+    public static final String FILTER = "shopping.orders.filter";
+    public static final String FILTER_EVALUATIONS = "shopping.orders.filter.evaluations";
+    public static final String CACHE_GETS = "cache.gets";
+    public static final String CACHE_EVICTIONS = "cache.evictions";
+    public static final String CACHE_SIZE = "cache.size";
+
+    private final MeterRegistry registry;
+    private final Map<Outcome, Timer> decisionTimers = new ConcurrentHashMap<>();
+    private final Map<Outcome, Timer> routeTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> filterTimers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> filterEvaluations = new ConcurrentHashMap<>();
+
+    public AuthorizationMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public MeterRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Record the evaluation of a privilege check
+     */
+    public void recordDecision(Role role, Decision decision, long durationNanos) {
+        decisionTimers.computeIfAbsent(new Outcome(role, outcome(decision)), key -> Timer.builder(DECISIONS)
+                .description("Evaluation of AMS privilege checks")
+                .tag("privilege", key.role().asPrivilege().toAuthority())
+                .tag("outcome", key.outcome())
+                .register(registry))
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Record a route-level access check
+     *
+     * @param granted whether access to the route was granted, fully or
+     *                conditionally
+     */
+    public void recordRouteCheck(Role role, boolean granted, long durationNanos) {
+        routeTimers.computeIfAbsent(new Outcome(role, granted ? "granted" : "denied"), key -> Timer.builder(ROUTE_CHECKS)
+                .description("Route-level AMS access checks including the resolution of the Authorizations")
+                .tag("privilege", key.role().asPrivilege().toAuthority())
+                .tag("outcome", key.outcome())
+                .register(registry))
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Record the authorization filtering of a set of entities
+     *
+     * @param strategy    how the condition was applied, e.g. "sql" or "dictionary"
+     * @param evaluations number of times the condition was evaluated in Java
+     */
+    public void recordFilter(String strategy, long evaluations, long durationNanos) {
+        filterTimers.computeIfAbsent(strategy, key -> Timer.builder(FILTER)
+                .description("Authorization filtering of orders")
+                .tag("strategy", key)
+                .register(registry))
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+        filterEvaluations.computeIfAbsent(strategy, key -> DistributionSummary.builder(FILTER_EVALUATIONS)
+                .description("Condition evaluations per filtered request")
+                .tag("strategy", key)
+                .publishPercentileHistogram()
+                .register(registry))
+                .record(evaluations);
+    }
+
+    /**
+     * Expose the statistics of a cache, tagged with its name
+     */
+    public void registerCache(String name, BoundedCache<?, ?> cache) {
+        FunctionCounter.builder(CACHE_GETS, cache, BoundedCache::getHitCount)
+                .tag("cache", name)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder(CACHE_GETS, cache, BoundedCache::getMissCount)
+                .tag("cache", name)
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder(CACHE_EVICTIONS, cache, BoundedCache::getEvictionCount)
+                .tag("cache", name)
+                .register(registry);
+        Gauge.builder(CACHE_SIZE, cache, BoundedCache::size)
+                .tag("cache", name)
+                .register(registry);
+    }
+
+    static String outcome(Decision decision) {
+        if (decision.isGranted()) {
+            return "granted";
+        }
+        return decision.isDenied() ? "denied" : "conditional";
+    }
+
+    private record Outcome(Role role, String outcome) {
+    }
+}
@@ -2,18 +2,37 @@ package com.sap.cloud.security.ams.samples.auth;
 
 import com.sap.cloud.security.ams.api.Authorizations;
 import com.sap.cloud.security.ams.api.Decision;
+import com.sap.cloud.security.ams.samples.model.Order;
 
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import static com.sap.cloud.security.ams.samples.auth.AmsAttributes.ORDER_CREATED_BY;
 import static com.sap.cloud.security.ams.samples.auth.Role.*;
 
+/**
+ * Shopping-specific facade for the AMS {@link Authorizations} of a principal.
+ *
+ * <p>
+ * Context-free role checks only depend on the policies of the principal, so their
+ * decisions are evaluated once per instance and then looked up by role. Instances
+ * live as long as the Authorizations they wrap: one request, or longer if the
+ * {@link AuthHandler} caches Authorizations across requests. If
+ * {@link AuthorizationMetrics} are given, each evaluated check is timed per
+ * privilege and outcome. Each evaluated check also emits a
+ * {@link AuthorizationEvents.CheckPrivilege} JFR event.
+ */
 public class ShoppingAuthorizations {
 
     private final Authorizations authorizations;
+    private final AuthorizationMetrics metrics;
+    private final AtomicReferenceArray<Decision> roleDecisions = new AtomicReferenceArray<>(Role.values().length);
 
-    private ShoppingAuthorizations(Authorizations authorizations) {
+    private ShoppingAuthorizations(Authorizations authorizations, AuthorizationMetrics metrics) {
         this.authorizations = authorizations;
+        this.metrics = metrics;
     }
 
     public Authorizations getBaseAuthorizations() {
@@ -21,27 +40,73 @@ public class ShoppingAuthorizations {
     }
 
     public static ShoppingAuthorizations of(Authorizations authorizations) {
-        return new ShoppingAuthorizations(authorizations);
+        return new ShoppingAuthorizations(authorizations, null);
+    }
+
+    public static ShoppingAuthorizations of(Authorizations authorizations, AuthorizationMetrics metrics) {
+        return new ShoppingAuthorizations(authorizations, metrics);
     }
 
     public Decision checkCreateOrder(String productCategory, double totalAmount) {
-        return authorizations.checkPrivilege(
+        AuthorizationEvents.CheckPrivilege event = AuthorizationEvents.beginCheckPrivilege();
+        long start = System.nanoTime();
+        Decision decision = authorizations.checkPrivilege(
                 CREATE_ORDERS.getAction(),
                 CREATE_ORDERS.getResource(),
                 Map.of(
                         AmsAttributes.PRODUCT_CATEGORY, productCategory,
                         AmsAttributes.ORDER_TOTAL, totalAmount));
+        record(CREATE_ORDERS, decision, start, event);
+        return decision;
     }
 
     public Decision checkReadOrder(String createdBy) {
-        return authorizations.checkPrivilege(
+        AuthorizationEvents.CheckPrivilege event = AuthorizationEvents.beginCheckPrivilege();
+        long start = System.nanoTime();
+        Decision decision = authorizations.checkPrivilege(
                 READ_ORDERS.getAction(),
                 READ_ORDERS.getResource(),
                 Map.of(
                         ORDER_CREATED_BY, createdBy));
+        record(READ_ORDERS, decision, start, event);
+        return decision;
     }
 
     public Decision checkRole(Role role) {
-        return authorizations.checkPrivilege(role.getAction(), role.getResource());
+        Decision decision = roleDecisions.get(role.ordinal());
+        if (decision == null) {
+            AuthorizationEvents.CheckPrivilege event = AuthorizationEvents.beginCheckPrivilege();
+            long start = System.nanoTime();
+            decision = authorizations.checkPrivilege(role.getAction(), role.getResource());
+            roleDecisions.set(role.ordinal(), decision);
+            record(role, decision, start, event);
+        }
+        return decision;
+    }
+
+    /**
+     * Filter a batch of orders by the read:orders privilege with a single evaluation
+     * of the condition per distinct creator, see {@link OrderPredicates#filterOrders}
+     *
+     * @return the rows of the readable orders, numbered in iteration order
+     */
+    public BitSet filterOrders(Collection<Order> orders) {
+        return OrderPredicates.filterOrders(checkRole(READ_ORDERS), orders);
+    }
+
+    /**
+     * Bulk filter for several batches of orders of one request, e.g. the batches
+     * scanned for a page, that counts its evaluations of the read:orders condition,
+     * see {@link OrderPredicates.CreatorFilter#filterOrders}
+     */
+    public OrderPredicates.CreatorFilter readableCreators() {
+        return OrderPredicates.compileCreatorFilter(checkRole(READ_ORDERS));
+    }
+
+    private void record(Role role, Decision decision, long start, AuthorizationEvents.CheckPrivilege event) {
+        if (metrics != null) {
+            metrics.recordDecision(role, decision, System.nanoTime() - start);
+        }
+        AuthorizationEvents.commit(event, role, decision);
     }
 }
@@ -0,0 +1,62 @@
+package com.sap.cloud.security.ams.samples.auth;
+
+import com.sap.cloud.security.token.Token;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Cache of validated tokens with least-recently-used eviction.
+ *
+ * <p>
+ * Entries are keyed by a SHA-256 hash of the credentials of a request, see
+ * {@link #keyOf(String, String)}, so raw tokens are not kept as keys, and
+ * expire with the {@code exp} claim of their token.
+ */
+public class TokenCache extends BoundedCache<String, Token> {
+
+    /**
+     * @param maxSize maximum number of cached tokens
+     */
+    public TokenCache(int maxSize) {
+        // entries are always put with the remaining lifetime of their token
+        super(maxSize, Duration.ZERO);
+    }
+
+    /**
+     * Cache key of the credentials of a request
+     *
+     * @param authorization     Authorization header of the request
+     * @param clientCertificate client certificate of the request, as tokens may be
+     *                          bound to it, or null
+     */
+    public static String keyOf(String authorization, String clientCertificate) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(authorization.getBytes(StandardCharsets.UTF_8));
+            if (clientCertificate != null) {
+                digest.update((byte) '\n');
+                digest.update(clientCertificate.getBytes(StandardCharsets.UTF_8));
+            }
+            return Base64.getEncoder().encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Cache a validated token until its {@code exp} claim. Tokens without
+     * expiration or that have already expired are not cached.
+     */
+    @Override
+    public void put(String key, Token token) {
+        Instant expiration = token.getExpiration();
+        if (expiration != null) {
+            put(key, token, Duration.between(Instant.now(), expiration));
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.sap.cloud.security.ams.samples.db;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import com.sap.cloud.security.ams.samples.model.Order;
+
+/**
+ * {@link OrderStore} that keeps the order attributes in parallel primitive
+ * arrays sorted by ID instead of one object per order.
+ *
+ * <p>
+ * A stored order costs 24 bytes in the columns: {@code id}, {@code productId},
+ * {@code quantity} and a dictionary code for {@code createdBy} as {@code int},
+ * {@code totalAmount} as {@code double}. The creator strings are stored once in
+ * the dictionary. {@link Order} objects are only created while orders are read,
+ * e.g. for serialization, and can be garbage collected right after. Orders of a
+ * creator are found by scanning the code column for a single {@code int}, and a
+ * filter on the creator is evaluated once per dictionary entry and then answered
+ * by the same scan.
+ *
+ * <p>
+ * Orders are usually added with increasing IDs and are then appended. Removed
+ * orders leave a tombstone that is compacted away once tombstones make up half
+ * of the rows. Access is guarded by a read-write lock. Iteration materializes
+ * the orders in small batches under the read lock and runs the action outside
+ * of it, so a slow consumer does not block writers.
+ */
+public class ColumnarOrderStore implements OrderStore {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int BATCH_SIZE = 256;
+    private static final int REMOVED = -1;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private int[] productIds = new int[INITIAL_CAPACITY];
+    private int[] quantities = new int[INITIAL_CAPACITY];
+    private double[] totalAmounts = new double[INITIAL_CAPACITY];
+    private int[] createdByCodes = new int[INITIAL_CAPACITY];
+    private int rows;
+    private int removedRows;
+
+    private final List<String> creators = new ArrayList<>();
+    private final Map<String, Integer> creatorCodes = new HashMap<>();
+
+    @Override
+    public void put(Order order) {
+        lock.writeLock().lock();
+        try {
+            int code = encodeCreator(order.getCreatedBy());
+            int row;
+            if (rows == 0 || order.getId() > ids[rows - 1]) {
+                row = rows;
+                insertRow(row);
+            } else {
+                row = Arrays.binarySearch(ids, 0, rows, order.getId());
+                if (row < 0) {
+                    row = -row - 1;
+                    insertRow(row);
+                } else if (createdByCodes[row] == REMOVED) {
+                    removedRows--;
+                }
+            }
+
+            ids[row] = order.getId();
+            productIds[row] = order.getProductId();
+            quantities[row] = order.getQuantity();
+            totalAmounts[row] = order.getTotalAmount();
+            createdByCodes[row] = code;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Order> remove(int orderId) {
+        lock.writeLock().lock();
+        try {
+            int row = findRow(orderId);
+            if (row < 0) {
+                return Optional.empty();
+            }
+            Order removed = toOrder(row);
+            createdByCodes[row] = REMOVED;
+            if (++removedRows * 2 > rows) {
+                compact();
+            }
+            return Optional.of(removed);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Order> get(int orderId) {
+        lock.readLock().lock();
+        try {
+            int row = findRow(orderId);
+            return row < 0 ? Optional.empty() : Optional.of(toOrder(row));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Order> getAll() {
+        List<Order> orders = new ArrayList<>(size());
+        forEach(orders::add);
+        return orders;
+    }
+
+    @Override
+    public void forEach(Consumer<? super Order> action) {
+        forEachAfter(Integer.MIN_VALUE, order -> {
+            action.accept(order);
+            return true;
+        });
+    }
+
+    @Override
+    public void forEachAfter(int afterId, Predicate<? super Order> action) {
+        List<Order> batch = new ArrayList<>(BATCH_SIZE);
+        int lastId = afterId;
+        while (true) {
+            batch.clear();
+            lock.readLock().lock();
+            try {
+                // resume by ID, rows may have moved since the last batch
+                int row = lastId == Integer.MIN_VALUE ? 0 : firstRowAfter(lastId);
+                for (; row < rows && batch.size() < BATCH_SIZE; row++) {
+                    if (createdByCodes[row] != REMOVED) {
+                        batch.add(toOrder(row));
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            if (batch.isEmpty()) {
+                return;
+            }
+            for (Order order : batch) {
+                if (!action.test(order)) {
+                    return;
+                }
+            }
+            lastId = batch.get(batch.size() - 1).getId();
+        }
+    }
+
+    @Override
+    public List<Order> getByCreator(String createdBy) {
+        List<Order> orders = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Integer code = creatorCodes.get(createdBy);
+            if (code == null) {
+                return orders;
+            }
+            int wanted = code;
+            int[] codes = createdByCodes;
+            for (int row = 0; row < rows; row++) {
+                if (codes[row] == wanted) {
+                    orders.add(toOrder(row));
+                }
+            }
+            return orders;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int[] getIdsByCreator(String createdBy) {
+        lock.readLock().lock();
+        try {
+            Integer code = creatorCodes.get(createdBy);
+            if (code == null) {
+                return new int[0];
+            }
+            boolean[] grantedCodes = new boolean[creators.size()];
+            grantedCodes[code] = true;
+            return idsOfCodes(grantedCodes);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int[] getIdsByCreators(Predicate<String> creatorFilter) {
+        lock.readLock().lock();
+        try {
+            boolean[] grantedCodes = new boolean[creators.size()];
+            for (int code = 0; code < grantedCodes.length; code++) {
+                grantedCodes[code] = creatorFilter.test(creators.get(code));
+            }
+            return idsOfCodes(grantedCodes);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Scan the code column for the rows of the granted creator codes. Must hold the
+     * read lock.
+     */
+    private int[] idsOfCodes(boolean[] grantedCodes) {
+        int[] matches = new int[16];
+        int count = 0;
+        int[] codes = createdByCodes;
+        for (int row = 0; row < rows; row++) {
+            int code = codes[row];
+            if (code != REMOVED && grantedCodes[code]) {
+                if (count == matches.length) {
+                    matches = Arrays.copyOf(matches, count * 2);
+                }
+                matches[count++] = ids[row];
+            }
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return rows - removedRows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            rows = 0;
+            removedRows = 0;
+            creators.clear();
+            creatorCodes.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Order toOrder(int row) {
+        return new Order(ids[row], productIds[row], quantities[row], totalAmounts[row],
+                creators.get(createdByCodes[row]));
+    }
+
+    private int encodeCreator(String createdBy) {
+        Integer code = creatorCodes.get(createdBy);
+        if (code == null) {
+            code = creators.size();
+            creators.add(createdBy);
+            creatorCodes.put(createdBy, code);
+        }
+        return code;
+    }
+
+    /**
+     * @return the row of the order or -1 if it does not exist or was removed
+     */
+    private int findRow(int orderId) {
+        int row = Arrays.binarySearch(ids, 0, rows, orderId);
+        return row >= 0 && createdByCodes[row] != REMOVED ? row : -1;
+    }
+
+    private int firstRowAfter(int orderId) {
+        int row = Arrays.binarySearch(ids, 0, rows, orderId);
+        return row >= 0 ? row + 1 : -row - 1;
+    }
+
+    /**
+     * Make room for a row at the given position, shifting later rows back
+     */
+    private void insertRow(int row) {
+        if (rows == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            productIds = Arrays.copyOf(productIds, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+            totalAmounts = Arrays.copyOf(totalAmounts, capacity);
+            createdByCodes = Arrays.copyOf(createdByCodes, capacity);
+        }
+        if (row < rows) {
+            int moved = rows - row;
+            System.arraycopy(ids, row, ids, row + 1, moved);
+            System.arraycopy(productIds, row, productIds, row + 1, moved);
+            System.arraycopy(quantities, row, quantities, row + 1, moved);
+            System.arraycopy(totalAmounts, row, totalAmounts, row + 1, moved);
+            System.arraycopy(createdByCodes, row, createdByCodes, row + 1, moved);
+        }
+        rows++;
+    }
+
+    /**
+     * Drop the tombstones of removed orders
+     */
+    private void compact() {
+        int target = 0;
+        for (int row = 0; row < rows; row++) {
+            if (createdByCodes[row] != REMOVED) {
+                ids[target] = ids[row];
+                productIds[target] = productIds[row];
+                quantities[target] = quantities[row];
+                totalAmounts[target] = totalAmounts[row];
+                createdByCodes[target] = createdByCodes[row];
+                target++;
+            }
+        }
+        rows = target;
+        removedRows = 0;
+    }
+}
@@ -1,20 +1,46 @@
 package com.sap.cloud.security.ams.samples.db;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 import org.slf4j.*;
 
 import com.opencsv.CSVReader;
-import com.opencsv.exceptions.CsvException;
+import com.opencsv.exceptions.CsvValidationException;
 import com.sap.cloud.security.ams.samples.model.*;
 
 /**
  * Utility class for loading initial data from CSV files
+ *
+ * <p>
+ * Records are parsed one at a time and passed on, so no intermediate list of
+ * raw records is built. By default the orders are read from the bundled
+ * {@code orders.csv}. A different file, e.g. with millions of synthetic orders
+ * for load tests, can be configured with the {@code ORDERS_CSV} environment
+ * variable or the {@code orders.csv} system property. Files larger than
+ * {@link #PARALLEL_THRESHOLD_BYTES} are split into chunks at line boundaries
+ * that are parsed in parallel on the common {@link ForkJoinPool}, each with its
+ * own {@link CSVReader}.
  */
 public class DataLoader {
     private static final Logger logger = LoggerFactory.getLogger(DataLoader.class);
 
+    /**
+     * Order files from this size on are parsed in parallel
+     */
+    static final long PARALLEL_THRESHOLD_BYTES = 8L * 1024 * 1024;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final long MAX_CHUNK_BYTES = 256L * 1024 * 1024;
+
     /**
      * Load products from CSV file
      */
@@ -22,13 +48,11 @@ public class DataLoader {
         List<Product> products = new ArrayList<>();
 
         try (InputStream is = DataLoader.class.getResourceAsStream("/csv/products.csv");
-                CSVReader reader = new CSVReader(new InputStreamReader(is))) {
-
-            List<String[]> records = reader.readAll();
+                CSVReader reader = new CSVReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
 
-            // Skip header row
-            for (int i = 1; i < records.size(); i++) {
-                String[] record = records.get(i);
+            reader.readNext(); // Skip header row
+            String[] record;
+            while ((record = reader.readNext()) != null) {
                 if (record.length >= 4) {
                     try {
                         int id = Integer.parseInt(record[0]);
@@ -45,7 +69,7 @@ public class DataLoader {
 
             logger.info("Loaded {} products from CSV", products.size());
 
-        } catch (IOException | CsvException e) {
+        } catch (IOException | CsvValidationException e) {
             logger.error("Error loading products from CSV", e);
         }
 
@@ -53,51 +77,206 @@ public class DataLoader {
     }
 
     /**
-     * Load orders from CSV file
+     * Load orders from the configured CSV file and pass them to the sink
+     *
+     * @param productsById products for the total amount calculation
+     * @param sink         receives each order once it has been parsed; it is called
+     *                     concurrently when a large file is parsed in parallel
+     * @return number of loaded orders
+     * @throws UncheckedIOException if the file cannot be read completely; the
+     *                              orders passed to the sink until then are only a
+     *                              part of the file and should be discarded
      */
-    public static List<Order> loadOrders(List<Product> products) {
-        List<Order> orders = new ArrayList<>();
+    public static int loadOrders(IntObjectMap<Product> productsById, Consumer<? super Order> sink) {
+        Path file = getOrdersFile();
+        try {
+            if (file == null) {
+                return loadOrders(DataLoader.class.getResourceAsStream("/csv/orders.csv"), productsById, sink);
+            }
+            if (Files.size(file) >= PARALLEL_THRESHOLD_BYTES) {
+                return loadOrdersParallel(file, productsById, sink);
+            }
+            return loadOrders(Files.newInputStream(file), productsById, sink);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load orders from " + (file != null ? file : "orders.csv"), e);
+        }
+    }
 
-        try (InputStream is = DataLoader.class.getResourceAsStream("/csv/orders.csv");
-                CSVReader reader = new CSVReader(new InputStreamReader(is))) {
+    /**
+     * Load orders from a CSV stream record by record. The stream is closed
+     * afterwards.
+     */
+    static int loadOrders(InputStream is, IntObjectMap<Product> productsById, Consumer<? super Order> sink)
+            throws IOException {
+        try (is; CSVReader reader = new CSVReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+            reader.skip(1); // Skip header row
+            int count = loadOrders(reader, productsById, sink);
+            logger.info("Loaded {} orders from CSV", count);
+            return count;
+        }
+    }
 
-            List<String[]> records = reader.readAll();
+    /**
+     * Parse a large order file in chunks on the common ForkJoin pool. The chunks
+     * start at line boundaries, so each chunk is parsed by its own CSV reader.
+     *
+     * <p>
+     * All chunks are parsed even if one of them fails, so no loader thread is
+     * still passing orders to the sink when the failure is reported.
+     *
+     * @throws IOException if any chunk cannot be parsed, with the failures of
+     *                     further chunks as suppressed exceptions
+     */
+    static int loadOrdersParallel(Path file, IntObjectMap<Product> productsById, Consumer<? super Order> sink)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            int chunks = (int) Math.max(ForkJoinPool.getCommonPoolParallelism() * CHUNKS_PER_THREAD,
+                    channel.size() / MAX_CHUNK_BYTES + 1);
+            long[] bounds = chunkBounds(channel, chunks);
 
-            // Skip header row
-            for (int i = 1; i < records.size(); i++) {
-                String[] record = records.get(i);
-                if (record.length >= 4) {
-                    try {
-                        int id = Integer.parseInt(record[0]);
-                        int productId = Integer.parseInt(record[1]);
-                        int quantity = Integer.parseInt(record[2]);
-                        String createdBy = record[3];
-
-                        // Find the product to calculate total amount
-                        Product product = products.stream()
-                                .filter(p -> p.getId() == productId)
-                                .findFirst()
-                                .orElse(null);
-
-                        if (product != null) {
-                            double totalAmount = product.getPrice() * quantity;
-                            orders.add(new Order(id, productId, quantity, totalAmount, createdBy));
-                        } else {
-                            logger.warn("Product with ID {} not found for order {}", productId, id);
+            Queue<Exception> failures = new ConcurrentLinkedQueue<>();
+            int count = IntStream.range(0, bounds.length - 1)
+                    .parallel()
+                    .map(i -> {
+                        try {
+                            return parseChunk(channel, bounds[i], bounds[i + 1], productsById, sink);
+                        } catch (IOException | RuntimeException e) {
+                            failures.add(e);
+                            return 0;
                         }
+                    })
+                    .sum();
 
-                    } catch (NumberFormatException e) {
-                        logger.warn("Skipping invalid order record: {}", String.join(",", record));
+            if (!failures.isEmpty()) {
+                IOException failure = new IOException(String.format("Failed to parse %d of %d chunks of %s",
+                        failures.size(), bounds.length - 1, file));
+                failures.forEach(failure::addSuppressed);
+                throw failure;
+            }
+            logger.info("Loaded {} orders from {} in {} chunks", count, file, bounds.length - 1);
+            return count;
+        }
+    }
+
+    /**
+     * Split the file after the header row into about {@code chunks} ranges that
+     * each start at the beginning of a line
+     */
+    private static long[] chunkBounds(FileChannel channel, int chunks) throws IOException {
+        long size = channel.size();
+        long start = nextLineStart(channel, 0);
+        long[] bounds = new long[chunks + 1];
+        int count = 0;
+        bounds[count++] = start;
+        for (int i = 1; i < chunks; i++) {
+            long bound = nextLineStart(channel, start + (size - start) * i / chunks);
+            if (bound > bounds[count - 1] && bound < size) {
+                bounds[count++] = bound;
+            }
+        }
+        bounds[count++] = size;
+        return Arrays.copyOf(bounds, count);
+    }
+
+    private static long nextLineStart(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        long size = channel.size();
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static int parseChunk(FileChannel channel, long from, long to, IntObjectMap<Product> productsById,
+            Consumer<? super Order> sink) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        try (CSVReader reader = new CSVReader(
+                new InputStreamReader(new ByteBufferInputStream(buffer), StandardCharsets.UTF_8))) {
+            return loadOrders(reader, productsById, sink);
+        }
+    }
+
+    private static int loadOrders(CSVReader reader, IntObjectMap<Product> productsById,
+            Consumer<? super Order> sink) throws IOException {
+        int count = 0;
+        String[] record;
+        try {
+            while ((record = reader.readNext()) != null) {
+                if (record.length >= 4) {
+                    Order order = toOrder(record[0], record[1], record[2], record[3], productsById);
+                    if (order != null) {
+                        sink.accept(order);
+                        count++;
                     }
                 }
             }
+        } catch (CsvValidationException e) {
+            throw new IOException("Invalid order record in line " + reader.getLinesRead(), e);
+        }
+        return count;
+    }
 
-            logger.info("Loaded {} orders from CSV", orders.size());
+    /**
+     * Input stream over the remaining bytes of a buffer
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
 
-        } catch (IOException | CsvException e) {
-            logger.error("Error loading orders from CSV", e);
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
         }
 
-        return orders;
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int read = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, read);
+            return read;
+        }
+    }
+
+    private static Order toOrder(String idField, String productIdField, String quantityField, String createdBy,
+            IntObjectMap<Product> productsById) {
+        try {
+            int id = Integer.parseInt(idField);
+            int productId = Integer.parseInt(productIdField);
+            int quantity = Integer.parseInt(quantityField);
+
+            Product product = productsById.get(productId);
+            if (product == null) {
+                logger.warn("Product with ID {} not found for order {}", productId, id);
+                return null;
+            }
+            return new Order(id, productId, quantity, product.getPrice() * quantity, createdBy);
+        } catch (NumberFormatException e) {
+            logger.warn("Skipping invalid order record: {},{},{},{}", idField, productIdField, quantityField,
+                    createdBy);
+            return null;
+        }
+    }
+
+    private static Path getOrdersFile() {
+        String file = System.getenv("ORDERS_CSV");
+        if (file == null || file.isBlank()) {
+            file = System.getProperty("orders.csv");
+        }
+        return file == null || file.isBlank() ? null : Path.of(file);
     }
 }
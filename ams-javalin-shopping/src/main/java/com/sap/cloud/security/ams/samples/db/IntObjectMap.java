@@ -0,0 +1,110 @@
+package com.sap.cloud.security.ams.samples.db;
+
+import java.util.Collection;
+import java.util.function.ToIntFunction;
+
+/**
+ * Minimal hash map from primitive {@code int} keys to objects.
+ *
+ * <p>
+ * Keys are stored in an {@code int[]} with open addressing and linear probing,
+ * so lookups neither box the key nor follow entry objects. Null values are not
+ * supported. The map is not thread-safe for writes; it can be read concurrently
+ * once it has been published safely, e.g. through a volatile field.
+ *
+ * @param <V> value type
+ */
+public final class IntObjectMap<V> {
+    private int[] keys;
+    private Object[] values;
+    private int size;
+
+    public IntObjectMap() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize number of entries the map can hold without resizing
+     */
+    public IntObjectMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 4) * 2 - 1) << 1;
+        this.keys = new int[capacity];
+        this.values = new Object[capacity];
+    }
+
+    /**
+     * Create a map of the values by their key
+     */
+    public static <V> IntObjectMap<V> index(Collection<? extends V> values, ToIntFunction<? super V> key) {
+        IntObjectMap<V> map = new IntObjectMap<>(values.size());
+        for (V value : values) {
+            map.put(key.applyAsInt(value), value);
+        }
+        return map;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return (V) values[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the previous value for the key or null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not supported");
+        }
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        for (; values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        // keep the load factor at or below 1/2 so probe sequences stay short
+        if (++size * 2 > keys.length) {
+            resize();
+        }
+        return null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void resize() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new Object[oldValues.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int hash(int key) {
+        // spread sequential IDs over the table
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
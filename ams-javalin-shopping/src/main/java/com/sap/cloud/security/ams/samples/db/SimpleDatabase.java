@@ -1,7 +1,14 @@
 package com.sap.cloud.security.ams.samples.db;
 
+import java.io.*;
+import java.nio.file.*;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 import org.slf4j.*;
 
@@ -9,36 +16,154 @@ import com.sap.cloud.security.ams.samples.model.*;
 
 /**
  * Simple in-memory database for products and orders
+ *
+ * <p>
+ * Products are read-only after loading and are published as an immutable
+ * snapshot. Orders are kept in an {@link OrderStore}, which is in-memory by
+ * default and can be backed by an SQL database to evaluate AMS conditions
+ * directly in the database. Creator-based authorization filters are answered by
+ * the store's own index on {@code createdBy} without scanning the orders.
+ *
+ * <p>
+ * When a data directory is given, the database is persistent: its state is
+ * kept in a binary {@link DatabaseSnapshot} plus a {@link WriteAheadLog} of the
+ * orders added and deleted since. A restart maps the snapshot and replays the
+ * log instead of parsing the CSV files again. Without a readable snapshot, the
+ * initial data is loaded and the log is moved aside instead of replayed.
+ * {@link #snapshot()} and {@link #close()} fold the log into a new snapshot.
  */
-public class SimpleDatabase {
+public class SimpleDatabase implements AutoCloseable {
     private static final Logger logger = LoggerFactory.getLogger(SimpleDatabase.class);
+    private static final int ORDER_BATCH_SIZE = 1024;
 
-    private final List<Product> products;
-    private final List<Order> orders;
+    private volatile List<Product> products;
+    private volatile IntObjectMap<Product> productsById;
+    private final OrderStore orders;
     private final AtomicInteger nextOrderId;
 
+    private final Path snapshotFile;
+    private final WriteAheadLog writeAheadLog;
+    // order changes share the lock, a snapshot excludes them while it is written
+    private final ReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+
     public SimpleDatabase() {
-        this.products = new ArrayList<>();
-        this.orders = new ArrayList<>();
+        this(new InMemoryOrderStore());
+    }
+
+    public SimpleDatabase(OrderStore orderStore) {
+        this.products = List.of();
+        this.productsById = new IntObjectMap<>();
+        this.orders = orderStore;
         this.nextOrderId = new AtomicInteger(1);
+        this.snapshotFile = null;
+        this.writeAheadLog = null;
         loadInitialData();
     }
 
+    /**
+     * Create a persistent database
+     *
+     * @param orderStore store for the orders
+     * @param dataDir    directory for the snapshot and the write-ahead log; it is
+     *                   created if it does not exist
+     * @throws UncheckedIOException if the directory or the log cannot be opened or
+     *                              the initial orders cannot be loaded
+     */
+    public SimpleDatabase(OrderStore orderStore, Path dataDir) {
+        this.products = List.of();
+        this.productsById = new IntObjectMap<>();
+        this.orders = orderStore;
+        this.nextOrderId = new AtomicInteger(1);
+        this.snapshotFile = dataDir.resolve("snapshot.bin");
+
+        try {
+            Files.createDirectories(dataDir);
+            Path logFile = dataDir.resolve("orders.wal");
+            boolean restored = Files.exists(snapshotFile) && restoreSnapshot();
+            if (!restored) {
+                loadInitialData();
+                // the log continues a snapshot that is gone, it does not apply to the initial data
+                discardLog(logFile);
+            }
+
+            this.writeAheadLog = WriteAheadLog.open(logFile);
+            if (restored) {
+                int replayed = writeAheadLog.replay(new WriteAheadLog.Listener() {
+                    @Override
+                    public void orderAdded(Order order) {
+                        orders.put(order);
+                        nextOrderId.accumulateAndGet(order.getId() + 1, Math::max);
+                    }
+
+                    @Override
+                    public void orderDeleted(int orderId) {
+                        orders.remove(orderId);
+                    }
+                });
+                logger.info("Replayed {} order changes from the write-ahead log", replayed);
+            } else {
+                snapshot();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open database in " + dataDir, e);
+        }
+    }
+
+    private boolean restoreSnapshot() {
+        long start = System.nanoTime();
+        DatabaseSnapshot snapshot;
+        try {
+            snapshot = DatabaseSnapshot.read(snapshotFile);
+        } catch (IOException e) {
+            logger.warn("Ignoring unreadable snapshot {}, loading initial data instead", snapshotFile, e);
+            return false;
+        }
+
+        this.productsById = IntObjectMap.index(snapshot.getProducts(), Product::getId);
+        this.products = snapshot.getProducts();
+        snapshot.forEachOrder(orders::put);
+        this.nextOrderId.set(snapshot.getNextOrderId());
+
+        logger.info("Restored {} products and {} orders from snapshot in {} ms", products.size(),
+                snapshot.getOrderCount(), (System.nanoTime() - start) / 1_000_000);
+        return true;
+    }
+
+    /**
+     * Move a non-empty write-ahead log aside, so it is kept for inspection but
+     * not replayed
+     */
+    private static void discardLog(Path logFile) throws IOException {
+        if (Files.exists(logFile) && Files.size(logFile) > 0) {
+            Path discarded = logFile.resolveSibling(logFile.getFileName() + ".discarded");
+            Files.move(logFile, discarded, StandardCopyOption.REPLACE_EXISTING);
+            logger.warn("Moved the write-ahead log without a snapshot to {}", discarded);
+        }
+    }
+
     private void loadInitialData() {
         // Load products first
         List<Product> loadedProducts = DataLoader.loadProducts();
-        this.products.addAll(loadedProducts);
+        IntObjectMap<Product> loadedProductsById = IntObjectMap.index(loadedProducts, Product::getId);
+        this.productsById = loadedProductsById;
+        this.products = List.copyOf(loadedProducts);
 
-        // Load orders (depends on products for total amount calculation)
-        List<Order> loadedOrders = DataLoader.loadOrders(loadedProducts);
-        this.orders.addAll(loadedOrders);
+        // Load orders (depends on products for total amount calculation). They
+        // are stored as they are parsed, possibly from several loader threads,
+        // and removed again if the file cannot be read completely.
+        AtomicInteger maxId = new AtomicInteger();
+        try {
+            DataLoader.loadOrders(loadedProductsById, order -> {
+                orders.put(order);
+                maxId.accumulateAndGet(order.getId(), Math::max);
+            });
+        } catch (UncheckedIOException e) {
+            orders.clear();
+            throw e;
+        }
 
         // Set next order ID to be higher than existing ones
-        int maxId = loadedOrders.stream()
-                .mapToInt(Order::getId)
-                .max()
-                .orElse(0);
-        this.nextOrderId.set(maxId + 1);
+        this.nextOrderId.set(maxId.get() + 1);
 
         logger.info("Database initialized with {} products and {} orders",
                 products.size(), orders.size());
@@ -48,37 +173,235 @@ public class SimpleDatabase {
         return new ArrayList<>(products);
     }
 
+    /**
+     * Pass all products to the action without copying the product list
+     */
+    public void forEachProduct(Consumer<? super Product> action) {
+        products.forEach(action);
+    }
+
     public List<Order> getOrders() {
-        return new ArrayList<>(orders);
+        return orders.getAll();
+    }
+
+    /**
+     * Pass all orders sorted by ID to the action without collecting them first
+     */
+    public void forEachOrder(Consumer<? super Order> action) {
+        orders.forEach(action);
+    }
+
+    /**
+     * Get a page of orders that pass the filter, resuming after the order with ID
+     * {@code afterId}. The ordered index is scanned from there only until the page
+     * is full, so the cost of a page does not grow with the total number of orders
+     * before it.
+     *
+     * @param afterId ID of the last order of the previous page, 0 for the first page
+     * @param limit   maximum number of orders of the page
+     * @param filter  orders to include, e.g. those granted by an authorization decision
+     */
+    public List<Order> getOrdersAfter(int afterId, int limit, Predicate<? super Order> filter) {
+        List<Order> page = new ArrayList<>(Math.min(limit, 100));
+        orders.forEachAfter(afterId, order -> {
+            if (filter.test(order)) {
+                page.add(order);
+            }
+            return page.size() < limit;
+        });
+        return page;
+    }
+
+    /**
+     * Get a page of orders like {@link #getOrdersAfter(int, int, Predicate)}, but
+     * filter the scanned orders in batches, e.g. with
+     * {@code OrderPredicates.CreatorFilter#filterOrders} that evaluates an
+     * authorization condition once per distinct creator of a batch. The scan stops
+     * after the batch that fills the page.
+     *
+     * @param afterId     ID of the last order of the previous page, 0 for the first
+     *                    page
+     * @param limit       maximum number of orders of the page
+     * @param batchFilter rows of a batch to include, numbered in list order
+     */
+    public List<Order> getOrdersAfterInBatches(int afterId, int limit, Function<List<Order>, BitSet> batchFilter) {
+        List<Order> page = new ArrayList<>(Math.min(limit, 100));
+        List<Order> batch = new ArrayList<>(ORDER_BATCH_SIZE);
+        orders.forEachAfter(afterId, order -> {
+            batch.add(order);
+            if (batch.size() < ORDER_BATCH_SIZE) {
+                return true;
+            }
+            addGranted(batch, batchFilter.apply(batch), page, limit);
+            batch.clear();
+            return page.size() < limit;
+        });
+        if (!batch.isEmpty() && page.size() < limit) {
+            addGranted(batch, batchFilter.apply(batch), page, limit);
+        }
+        return page;
+    }
+
+    private static void addGranted(List<Order> batch, BitSet granted, List<Order> page, int limit) {
+        for (int row = granted.nextSetBit(0); row >= 0 && page.size() < limit; row = granted.nextSetBit(row + 1)) {
+            page.add(batch.get(row));
+        }
     }
 
     public List<Order> getOrdersByCreator(String createdBy) {
-        return new ArrayList<>(orders.stream()
-                .filter(o -> o.getCreatedBy().equals(createdBy))
-                .toList());
+        return orders.getByCreator(createdBy);
+    }
+
+    /**
+     * Whether {@link #getOrdersWhere(String, List)} can be used to filter orders
+     */
+    public boolean supportsSqlConditions() {
+        return orders.supportsSqlConditions();
+    }
+
+    /**
+     * Get the orders matching an SQL WHERE condition template with parameters
+     */
+    public List<Order> getOrdersWhere(String sqlCondition, List<?> parameters) {
+        return orders.getWhere(sqlCondition, parameters);
+    }
+
+    /**
+     * Pass the orders matching an SQL WHERE condition template with parameters to
+     * the action without collecting them first
+     */
+    public void forEachOrderWhere(String sqlCondition, List<?> parameters, Consumer<? super Order> action) {
+        orders.forEachWhere(sqlCondition, parameters, action);
+    }
+
+    /**
+     * Get a page of orders matching an SQL WHERE condition template with
+     * parameters, resuming after the order with ID {@code afterId}
+     *
+     * @see #getOrdersAfter(int, int, Predicate)
+     */
+    public List<Order> getOrdersWhereAfter(String sqlCondition, List<?> parameters, int afterId, int limit) {
+        return orders.getWhereAfter(sqlCondition, parameters, afterId, limit);
+    }
+
+    /**
+     * Pass the orders whose creator passes the filter to the action, sorted by ID.
+     * The filter is evaluated once per distinct creator and the orders are looked
+     * up via the creators' posting lists, so the cost depends on the number of
+     * creators and matching orders rather than on the number of all orders.
+     *
+     * @param creatorFilter e.g. a read:orders decision compiled for
+     *                      {@code order.createdBy}
+     */
+    public void forEachOrderByCreators(Predicate<String> creatorFilter, Consumer<? super Order> action) {
+        forEachOrder(orders.getIdsByCreators(creatorFilter), action);
+    }
+
+    /**
+     * Pass the orders of a single creator to the action, sorted by ID. Used
+     * instead of {@link #forEachOrderByCreators(Predicate, Consumer)} if a
+     * condition only grants the orders of one creator, e.g. ReadOwnOrders, as the
+     * creator is then looked up in the index once instead of testing every
+     * creator.
+     */
+    public void forEachOrderByCreator(String createdBy, Consumer<? super Order> action) {
+        forEachOrder(orders.getIdsByCreator(createdBy), action);
+    }
+
+    /**
+     * Get the orders whose creator passes the filter, sorted by ID
+     *
+     * @see #forEachOrderByCreators(Predicate, Consumer)
+     */
+    public List<Order> getOrdersByCreators(Predicate<String> creatorFilter) {
+        List<Order> result = new ArrayList<>();
+        forEachOrder(orders.getIdsByCreators(creatorFilter), result::add);
+        return result;
+    }
+
+    /**
+     * Get a page of the orders whose creator passes the filter, resuming after the
+     * order with ID {@code afterId}
+     *
+     * @see #forEachOrderByCreators(Predicate, Consumer)
+     * @see #getOrdersAfter(int, int, Predicate)
+     */
+    public List<Order> getOrdersByCreatorsAfter(Predicate<String> creatorFilter, int afterId, int limit) {
+        return getOrdersAfter(orders.getIdsByCreators(creatorFilter), afterId, limit);
+    }
+
+    /**
+     * Get a page of the orders of a single creator, resuming after the order with
+     * ID {@code afterId}
+     *
+     * @see #forEachOrderByCreator(String, Consumer)
+     * @see #getOrdersAfter(int, int, Predicate)
+     */
+    public List<Order> getOrdersByCreatorAfter(String createdBy, int afterId, int limit) {
+        return getOrdersAfter(orders.getIdsByCreator(createdBy), afterId, limit);
+    }
+
+    private List<Order> getOrdersAfter(int[] orderIds, int afterId, int limit) {
+        int start = Arrays.binarySearch(orderIds, afterId);
+        start = start >= 0 ? start + 1 : -start - 1;
+
+        List<Order> page = new ArrayList<>(Math.min(limit, 100));
+        for (int i = start; i < orderIds.length && page.size() < limit; i++) {
+            orders.get(orderIds[i]).ifPresent(page::add);
+        }
+        return page;
+    }
+
+    private void forEachOrder(int[] orderIds, Consumer<? super Order> action) {
+        // orders that have been removed since their IDs were read are skipped
+        for (int orderId : orderIds) {
+            orders.get(orderId).ifPresent(action);
+        }
     }
 
     public Optional<Product> getProductById(int productId) {
-        return products.stream()
-                .filter(p -> p.getId() == productId)
-                .findFirst();
+        return Optional.ofNullable(productsById.get(productId));
     }
 
     public Optional<Order> getOrderById(int orderId) {
-        return orders.stream()
-                .filter(o -> o.getId() == orderId)
-                .findFirst();
+        return orders.get(orderId);
     }
 
     public Order addOrder(Order order) {
         Order newOrder = order.withId(nextOrderId.getAndIncrement());
-        orders.add(newOrder);
+        if (writeAheadLog == null) {
+            orders.put(newOrder);
+        } else {
+            snapshotLock.readLock().lock();
+            try {
+                writeAheadLog.appendAdd(newOrder);
+                orders.put(newOrder);
+            } finally {
+                snapshotLock.readLock().unlock();
+            }
+        }
         logger.info("Added new order: {}", newOrder);
         return newOrder;
     }
 
     public boolean deleteOrder(int orderId) {
-        boolean removed = orders.removeIf(o -> o.getId() == orderId);
+        boolean removed;
+        if (writeAheadLog == null) {
+            removed = orders.remove(orderId).isPresent();
+        } else {
+            snapshotLock.readLock().lock();
+            try {
+                // log first like addOrder, so a failed append leaves the order in place;
+                // concurrent deletions may log an order twice, which replays like once
+                if (orders.get(orderId).isEmpty()) {
+                    return false;
+                }
+                writeAheadLog.appendDelete(orderId);
+                removed = orders.remove(orderId).isPresent();
+            } finally {
+                snapshotLock.readLock().unlock();
+            }
+        }
         if (removed) {
             logger.info("Deleted order with ID: {}", orderId);
         }
@@ -86,10 +409,68 @@ public class SimpleDatabase {
     }
 
     public void reset() {
-        orders.clear();
-        products.clear();
-        nextOrderId.set(1);
-        loadInitialData();
+        snapshotLock.writeLock().lock();
+        try {
+            orders.clear();
+            nextOrderId.set(1);
+            loadInitialData();
+            if (writeAheadLog != null) {
+                snapshot();
+            }
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
         logger.info("Database reset to initial state");
     }
+
+    /**
+     * Write the current state to the snapshot file and clear the write-ahead log.
+     * Order changes wait while the snapshot is written.
+     *
+     * @throws IllegalStateException if the database is not persistent
+     * @throws UncheckedIOException  if the snapshot cannot be written
+     */
+    public void snapshot() {
+        if (writeAheadLog == null) {
+            throw new IllegalStateException("Database has no data directory");
+        }
+
+        snapshotLock.writeLock().lock();
+        try {
+            long start = System.nanoTime();
+            DatabaseSnapshot snapshot = DatabaseSnapshot.of(products, orders, nextOrderId.get());
+            snapshot.write(snapshotFile);
+            writeAheadLog.truncate();
+            logger.info("Wrote snapshot of {} orders in {} ms", snapshot.getOrderCount(),
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write snapshot " + snapshotFile, e);
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Snapshot a persistent database and close its write-ahead log. Also closes
+     * the order store if it holds resources, such as the connections of an
+     * {@link H2OrderStore}.
+     */
+    @Override
+    public void close() {
+        if (writeAheadLog != null) {
+            snapshot();
+            try {
+                writeAheadLog.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close the write-ahead log", e);
+            }
+        }
+        if (orders instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                logger.warn("Failed to close the order store", e);
+            }
+        }
+    }
 }
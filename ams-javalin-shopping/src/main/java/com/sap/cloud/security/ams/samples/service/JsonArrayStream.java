@@ -0,0 +1,96 @@
+package com.sap.cloud.security.ams.samples.service;
+
+import io.javalin.http.ContentType;
+import io.javalin.http.Context;
+import io.javalin.http.InternalServerErrorResponse;
+import io.javalin.json.JsonMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Writes a JSON array to the response element by element with the JsonMapper
+ * configured for the Javalin app, so the response does not need to be collected
+ * in a list first and memory use stays constant regardless of the number of
+ * elements.
+ *
+ * <p>
+ * The status code and headers are sent with the first buffered chunk, so all
+ * authorization checks that may fail the request must be done before the stream
+ * is opened. If reading the elements fails before that, the request fails with
+ * status 500. Afterwards the status cannot change anymore: the error is logged
+ * and the array is left unterminated, so clients see an invalid document
+ * instead of a complete-looking but truncated list.
+ */
+final class JsonArrayStream {
+    private static final Logger logger = LoggerFactory.getLogger(JsonArrayStream.class);
+
+    private final JsonMapper jsonMapper;
+    private final Writer writer;
+    private int count;
+
+    private JsonArrayStream(JsonMapper jsonMapper, Writer writer) {
+        this.jsonMapper = jsonMapper;
+        this.writer = writer;
+    }
+
+    /**
+     * Write a JSON array response
+     *
+     * @param elements passes the elements of the array to the given consumer, e.g.
+     *                 {@code database::forEachProduct}
+     * @return number of elements written
+     * @throws InternalServerErrorResponse if reading the elements fails before
+     *                                     the response is committed
+     */
+    static int write(Context ctx, Consumer<Consumer<Object>> elements) {
+        JsonArrayStream stream = null;
+        try {
+            ctx.contentType(ContentType.APPLICATION_JSON);
+            // the response stream is closed by Javalin, and an array is only terminated once complete
+            Writer writer = new BufferedWriter(new OutputStreamWriter(ctx.outputStream(), StandardCharsets.UTF_8));
+            writer.write('[');
+            stream = new JsonArrayStream(ctx.jsonMapper(), writer);
+
+            elements.accept(stream::append);
+
+            writer.write(']');
+            writer.flush();
+            return stream.count;
+        } catch (IOException | RuntimeException e) {
+            int written = stream == null ? 0 : stream.count;
+            if (ctx.res().isCommitted()) {
+                logger.error("Failed to write JSON array after {} elements, the response is truncated", written, e);
+                return written;
+            }
+            logger.error("Failed to write JSON array", e);
+            ctx.res().resetBuffer();
+            throw new InternalServerErrorResponse();
+        }
+    }
+
+    /**
+     * Append an element to the array
+     *
+     * @throws UncheckedIOException if writing fails, e.g. because the client has
+     *                              disconnected
+     */
+    private void append(Object element) {
+        try {
+            if (count > 0) {
+                writer.write(',');
+            }
+            writer.write(jsonMapper.toJsonString(element, element.getClass()));
+            count++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write JSON response", e);
+        }
+    }
+}
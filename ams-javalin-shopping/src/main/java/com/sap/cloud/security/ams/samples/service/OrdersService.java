@@ -5,8 +5,10 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sap.cloud.security.ams.api.expression.AttributeName;
 import com.sap.cloud.security.ams.api.Decision;
 import com.sap.cloud.security.ams.dcn.visitor.SqlExtractor;
-import com.sap.cloud.security.ams.samples.auth.AmsAttributes;
 import com.sap.cloud.security.ams.samples.auth.AuthHandler;
+import com.sap.cloud.security.ams.samples.auth.AuthorizationEvents;
+import com.sap.cloud.security.ams.samples.auth.AuthorizationMetrics;
+import com.sap.cloud.security.ams.samples.auth.OrderPredicates;
 import com.sap.cloud.security.ams.samples.auth.ShoppingAuthorizations;
 import com.sap.cloud.security.ams.samples.db.SimpleDatabase;
 import com.sap.cloud.security.ams.samples.model.Order;
@@ -20,7 +22,6 @@ import org.slf4j.LoggerFactory;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 import static com.sap.cloud.security.ams.samples.auth.Role.*;
 
@@ -29,15 +30,24 @@ import static com.sap.cloud.security.ams.samples.auth.Role.*;
  */
 public class OrdersService {
     private static final Logger logger = LoggerFactory.getLogger(OrdersService.class);
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String CREATED_BY_COLUMN = "createdBy";
 
     private final SimpleDatabase database;
     private AuthHandler authHandler;
     private final ObjectMapper objectMapper;
+    private final AuthorizationMetrics metrics;
+    // the extractor holds no state of a decision and is shared by all requests
+    private final SqlExtractor extractGetOrdersSql = new SqlExtractor(Map.of(
+            AttributeName.of("order.createdBy"), CREATED_BY_COLUMN));
 
     public OrdersService(SimpleDatabase database, AuthHandler authHandler) {
         this.database = database;
         this.authHandler = authHandler;
         this.objectMapper = new ObjectMapper();
+        this.metrics = authHandler.getMetrics();
     }
 
     /**
@@ -193,13 +203,22 @@ public class OrdersService {
             ShoppingAuthorizations authorizations = authHandler.getAuthorizations();
             Decision decision = authorizations.checkRole(READ_ORDERS);
 
-            List<Order> orders;
             if (decision.isDenied()) {
                 // --- REDUNDANT PRIVILEGE PRE-CHECK IN HANDLER TO SHOWCASE API (ALREADY DONE
                 // VIA AUTHHANDLER) ---
                 throw new ForbiddenResponse();
-            } else if (decision.isGranted()) {
-                orders = database.getOrders();
+            }
+
+            if (ctx.queryParam("limit") != null || ctx.queryParam("cursor") != null) {
+                getOrderPage(ctx, authorizations, decision);
+                return;
+            }
+
+            // Orders are streamed to the response as they pass the authorization check
+            // instead of collecting them in a list first
+            int count;
+            if (decision.isGranted()) {
+                count = JsonArrayStream.write(ctx, database::forEachOrder);
             } else {
                 /*
                  * --- CONVERT AMS CONDITION TO DATABASE CONDITION ---
@@ -207,37 +226,139 @@ public class OrdersService {
                  * from a DCN condition to a database condition.
                  * In production, the result will typically be an SQL 'where condition template'
                  * with parameters for use in an SQL prepared statement.
-                 * In this sample though, the data lies in Java collections instead of a
-                 * database, so we demonstrate two approaches:
+                 * In this sample, the data lies either in Java collections (default) or in an
+                 * embedded H2 database, so we demonstrate two approaches:
                  *
                  * 1. SqlExtractor: Transforms DCN to SQL condition template
                  * - Maps AMS attribute names to database field references, e.g.
                  * "$app.order.createdBy" to "createdBy"
                  * - Generates parameterized SQL WHERE clause templates for use with prepared
                  * statements
+                 * - Executes the condition in the database if it is backed by SQL
                  *
-                 * 2. Loop-based filtering: For small resource sets, evaluates the condition for
-                 * each entity individually.
-                 * - Checks authorization per entity using the actual entity's attribute values
-                 * - Filters the collection based on authorization results
+                 * 2. Predicate-based filtering: For in-memory resource sets, compiles the
+                 * condition into a predicate over order.createdBy once per request.
+                 * - Evaluates the condition once per distinct creator in the database's
+                 * createdBy dictionary instead of once per entity
+                 * - Reads only the orders in the posting lists of the granted creators
+                 * - If the decision only grants the orders of one creator, e.g. for
+                 * ReadOwnOrders, looks up that creator's posting list instead of testing
+                 * every creator
                  */
 
                 // Alternative 1: Showcases SQL condition generation (for use with databases)
-                SqlExtractor.SqlResult sqlCondition = decision.visit(new SqlExtractor(Map.of(
-                        AttributeName.of("order.createdBy"), "createdBy")));
+                SqlExtractor.SqlResult sqlCondition = extractSqlCondition(decision);
                 logger.info("Generated SQL WHERE condition template: " + sqlCondition.getSqlTemplate() +
                         " with parameters " + sqlCondition.getParameters());
 
-                // Alternative 2: Showcases loop-based authorization check (for small resource
-                // sets)
-                orders = database.getOrders().stream()
-                        .filter(order -> decision.apply(Map.of(AmsAttributes.ORDER_CREATED_BY, order.getCreatedBy())).isGranted())
-                        .collect(Collectors.toList());
+                AuthorizationEvents.EntityFilter event = AuthorizationEvents.beginEntityFilter();
+                long start = System.nanoTime();
+                String strategy;
+                long evaluations = 0;
+                if (database.supportsSqlConditions()) {
+                    strategy = "sql";
+                    count = JsonArrayStream.write(ctx, response -> database.forEachOrderWhere(
+                            sqlCondition.getSqlTemplate(), sqlCondition.getParameters(), response));
+                } else {
+                    // Alternative 2: Showcases in-memory filtering with a predicate compiled from
+                    // the decision
+                    strategy = "dictionary";
+                    Optional<String> creator = OrderPredicates.singleCreator(decision, sqlCondition.getParameters());
+                    if (creator.isPresent()) {
+                        // only the orders of one creator are granted, e.g. by ReadOwnOrders
+                        count = JsonArrayStream.write(ctx,
+                                response -> database.forEachOrderByCreator(creator.get(), response));
+                    } else {
+                        OrderPredicates.CreatorFilter isReadableCreator = OrderPredicates.compileCreatorFilter(decision);
+                        count = JsonArrayStream.write(ctx,
+                                response -> database.forEachOrderByCreators(isReadableCreator, response));
+                        evaluations = isReadableCreator.evaluations();
+                    }
+                }
+                metrics.recordFilter(strategy, evaluations, System.nanoTime() - start);
+                AuthorizationEvents.commit(event, READ_ORDERS, decision, strategy, count, evaluations);
             }
 
-            ctx.json(orders);
             logger.info("Returned {} orders to user: {}",
-                    orders.size(), SecurityContext.getToken().getClaimAsString(TokenClaims.EMAIL));
+                    count, SecurityContext.getToken().getClaimAsString(TokenClaims.EMAIL));
         };
     }
+
+    /**
+     * GET /orders?limit=..&cursor=.. - Get a page of the orders visible to the user.
+     *
+     * <p>
+     * The cursor is the ID of the last order of the previous page. Pages are filled
+     * after authorization filtering, so a page only contains orders the user may
+     * read and is full unless no more readable orders follow. If the page is full,
+     * the cursor for the next page is returned in the X-Next-Cursor header. The
+     * in-memory filter scans from the cursor with the bulk
+     * {@link ShoppingAuthorizations#filterOrders} API, so the cost of a page is
+     * bounded by the orders it scans rather than by all orders of the granted
+     * creators.
+     */
+    private void getOrderPage(Context ctx, ShoppingAuthorizations authorizations, Decision decision) {
+        int limit = getIntQueryParam(ctx, "limit", DEFAULT_PAGE_SIZE);
+        int cursor = getIntQueryParam(ctx, "cursor", 0);
+        if (limit <= 0 || limit > MAX_PAGE_SIZE || cursor < 0) {
+            throw new BadRequestResponse("Invalid limit or cursor");
+        }
+
+        List<Order> orders;
+        if (decision.isGranted()) {
+            orders = database.getOrdersAfter(cursor, limit, order -> true);
+        } else {
+            SqlExtractor.SqlResult sqlCondition = extractSqlCondition(decision);
+            AuthorizationEvents.EntityFilter event = AuthorizationEvents.beginEntityFilter();
+            long start = System.nanoTime();
+            String strategy;
+            long evaluations = 0;
+            if (database.supportsSqlConditions()) {
+                strategy = "sql";
+                orders = database.getOrdersWhereAfter(sqlCondition.getSqlTemplate(), sqlCondition.getParameters(),
+                        cursor, limit);
+            } else {
+                Optional<String> creator = OrderPredicates.singleCreator(decision, sqlCondition.getParameters());
+                if (creator.isPresent()) {
+                    strategy = "dictionary";
+                    orders = database.getOrdersByCreatorAfter(creator.get(), cursor, limit);
+                } else {
+                    // the orders after the cursor are filtered in batches until the page is full,
+                    // with one evaluation per distinct creator of a batch
+                    strategy = "bitset";
+                    OrderPredicates.CreatorFilter isReadableCreator = authorizations.readableCreators();
+                    orders = database.getOrdersAfterInBatches(cursor, limit, isReadableCreator::filterOrders);
+                    evaluations = isReadableCreator.evaluations();
+                }
+            }
+            metrics.recordFilter(strategy, evaluations, System.nanoTime() - start);
+            AuthorizationEvents.commit(event, READ_ORDERS, decision, strategy, orders.size(), evaluations);
+        }
+
+        if (orders.size() == limit) {
+            ctx.header(NEXT_CURSOR_HEADER, String.valueOf(orders.get(orders.size() - 1).getId()));
+        }
+        ctx.json(orders);
+        logger.info("Returned page of {} orders after cursor {} to user: {}",
+                orders.size(), cursor, SecurityContext.getToken().getClaimAsString(TokenClaims.EMAIL));
+    }
+
+    private SqlExtractor.SqlResult extractSqlCondition(Decision decision) {
+        AuthorizationEvents.DecisionVisit event = AuthorizationEvents.beginDecisionVisit();
+        SqlExtractor.SqlResult sqlCondition = decision.visit(extractGetOrdersSql);
+        AuthorizationEvents.commit(event, READ_ORDERS, SqlExtractor.class);
+        return sqlCondition;
+    }
+
+    private static int getIntQueryParam(Context ctx, String name, int defaultValue) {
+        String value = ctx.queryParam(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new BadRequestResponse("Invalid " + name);
+        }
+    }
 }
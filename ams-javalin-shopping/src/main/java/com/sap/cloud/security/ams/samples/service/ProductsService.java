@@ -1,15 +1,12 @@
 package com.sap.cloud.security.ams.samples.service;
 
-import java.util.List;
-
 import com.sap.cloud.security.ams.samples.auth.AuthHandler;
 import com.sap.cloud.security.ams.samples.db.SimpleDatabase;
-import com.sap.cloud.security.ams.samples.model.Product;
 import com.sap.cloud.security.token.*;
 
 import org.slf4j.*;
 
-import io.javalin.http.*;
+import io.javalin.http.Handler;
 
 /**
  * Service for handling product-related operations
@@ -29,15 +26,9 @@ public class ProductsService {
         return ctx -> {
             logger.debug("Processing GET /products request");
 
-            try {
-                List<Product> products = database.getProducts();
-                ctx.json(products);
-                logger.info("Returned {} products to user: {}",
-                        products.size(), SecurityContext.getToken().getClaimAsString(TokenClaims.EMAIL));
-            } catch (Exception e) {
-                logger.error("Error retrieving products", e);
-                throw new InternalServerErrorResponse();
-            }
+            int count = JsonArrayStream.write(ctx, database::forEachProduct);
+            logger.info("Returned {} products to user: {}",
+                    count, SecurityContext.getToken().getClaimAsString(TokenClaims.EMAIL));
         };
     }
 }
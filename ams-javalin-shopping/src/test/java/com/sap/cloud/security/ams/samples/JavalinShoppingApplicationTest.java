@@ -6,6 +6,7 @@ import com.sap.cloud.security.ams.samples.auth.TestAuthHandler;
 import com.sap.cloud.security.ams.samples.model.Order;
 import io.javalin.Javalin;
 import io.javalin.testtools.JavalinTest;
+import org.eclipse.jetty.util.VirtualThreads;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,11 +14,17 @@ import org.junit.jupiter.api.Test;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static java.net.http.HttpRequest.BodyPublishers.noBody;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 public class JavalinShoppingApplicationTest {
     private static TestAuthHandler testAuthHandler;
@@ -57,6 +64,26 @@ public class JavalinShoppingApplicationTest {
         });
     }
 
+    @Test
+    public void testMetricsRequireAuthentication() {
+        JavalinTest.test(app, (server, client) -> {
+            var response = client.get("/metrics");
+            assertEquals(401, response.code());
+        });
+    }
+
+    @Test
+    public void testMetricsContainRouteChecks() {
+        JavalinTest.test(app, (server, client) -> {
+            client.get("/products", req -> req.header("Authorization", "Bearer " + ALICE_JWT));
+
+            var response = client.get("/metrics", req -> req.header("Authorization", "Bearer " + ALICE_JWT));
+            assertEquals(200, response.code());
+            assertTrue(response.body().string()
+                    .contains("ams_authorization_route_seconds_count{outcome=\"granted\",privilege=\"read:products\"}"));
+        });
+    }
+
     // GET /products tests
     @Test
     public void testProductsAllowedForUserWithReadProductsPolicy() {
@@ -221,6 +248,102 @@ public class JavalinShoppingApplicationTest {
         });
     }
 
+    @Test
+    public void testGetOrdersPaginated() {
+        JavalinTest.test(app, (server, client) -> {
+            var firstPage = client.get("/orders?limit=3", req -> {
+                req.header("Authorization", "Bearer " + ALICE_JWT);
+            });
+            assertEquals(200, firstPage.code());
+            assertEquals("3", firstPage.header("X-Next-Cursor"));
+
+            var lastPage = client.get("/orders?limit=3&cursor=3", req -> {
+                req.header("Authorization", "Bearer " + ALICE_JWT);
+            });
+            assertEquals(200, lastPage.code());
+            assertNull(lastPage.header("X-Next-Cursor"));
+
+            try {
+                List<Order> first = objectMapper.readValue(firstPage.body().string(), new TypeReference<>() {
+                });
+                List<Order> last = objectMapper.readValue(lastPage.body().string(), new TypeReference<>() {
+                });
+                assertEquals(List.of(1, 2, 3), first.stream().map(Order::getId).toList());
+                assertEquals(List.of(4), last.stream().map(Order::getId).toList());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    @Test
+    public void testGetOrdersPageFilledAfterFiltering() {
+        JavalinTest.test(app, (server, client) -> {
+            var response = client.get("/orders?limit=1", req -> {
+                req.header("Authorization", "Bearer " + BOB_JWT);
+            });
+            assertEquals(200, response.code());
+
+            try {
+                List<Order> orders = objectMapper.readValue(response.body().string(), new TypeReference<>() {
+                });
+                // the orders of other users before bob's first order must not leave the page empty
+                assertEquals(1, orders.size());
+                assertEquals("bob", orders.get(0).getCreatedBy());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    @Test
+    public void testGetOrdersInvalidLimit() {
+        JavalinTest.test(app, (server, client) -> {
+            var response = client.get("/orders?limit=0", req -> {
+                req.header("Authorization", "Bearer " + ALICE_JWT);
+            });
+            assertEquals(400, response.code());
+        });
+    }
+
+    @Test
+    public void testConcurrentRequestsOnVirtualThreadsKeepTheirSecurityContext() {
+        assumeTrue(VirtualThreads.isSupported(), "virtual threads require Java 21+");
+        Javalin virtualThreadApp = AppFactory.createApp(testAuthHandler, true);
+
+        JavalinTest.test(virtualThreadApp, (server, client) -> {
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                // alice and bob alternate, so a leaked SecurityContext or request memo shows up as
+                // the other user's orders
+                List<Future<List<Order>>> responses = new ArrayList<>();
+                for (int i = 0; i < 40; i++) {
+                    String jwt = i % 2 == 0 ? ALICE_JWT : BOB_JWT;
+                    responses.add(executor.submit(() -> {
+                        var response = client.get("/orders", req -> req.header("Authorization", "Bearer " + jwt));
+                        assertEquals(200, response.code());
+                        return objectMapper.readValue(response.body().string(), new TypeReference<List<Order>>() {
+                        });
+                    }));
+                }
+
+                for (int i = 0; i < responses.size(); i++) {
+                    List<Order> orders = responses.get(i).get(30, TimeUnit.SECONDS);
+                    if (i % 2 == 0) {
+                        assertEquals(4, orders.size());
+                    } else {
+                        assertFalse(orders.isEmpty());
+                        assertTrue(orders.stream().allMatch(o -> "bob".equals(o.getCreatedBy())));
+                    }
+                }
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            } finally {
+                executor.shutdownNow();
+            }
+        });
+    }
+
     // JWT Helper Methods
     private static String loadJwtFromFile(String filename) throws IOException {
         Path filePath = Path.of("src/test/resources/jwt", filename);
@@ -0,0 +1,62 @@
+package com.sap.cloud.security.ams.samples.auth;
+
+import com.sap.cloud.security.token.SapIdToken;
+import com.sap.cloud.security.token.SecurityContext;
+import com.sap.cloud.security.token.Token;
+import com.sap.cloud.security.xsuaa.jwt.Base64JwtDecoder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AuthorizationEventsTest {
+
+    @AfterEach
+    void tearDown() {
+        SecurityContext.clear();
+        AuthorizationEvents.clear();
+    }
+
+    @Test
+    void testHashIsStableWithinTheProcess() throws Exception {
+        long hash = AuthorizationEvents.hash("alice");
+
+        assertEquals(hash, AuthorizationEvents.hash("alice"));
+        assertEquals(hash, CompletableFuture.supplyAsync(() -> AuthorizationEvents.hash("alice")).get());
+        assertNotEquals(hash, AuthorizationEvents.hash("bob"));
+    }
+
+    @Test
+    void testHashIsNotAPlainDigestOfTheUserId() throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest("alice".getBytes(StandardCharsets.UTF_8));
+
+        assertNotEquals(ByteBuffer.wrap(digest).getLong(), AuthorizationEvents.hash("alice"));
+    }
+
+    @Test
+    void testPrincipalHashOfGlobalUserId() {
+        assertEquals(0, AuthorizationEvents.principalHash());
+
+        SecurityContext.setToken(token("alice"));
+        long alice = AuthorizationEvents.principalHash();
+        assertEquals(AuthorizationEvents.hash("alice"), alice);
+
+        SecurityContext.setToken(token("bob"));
+        assertEquals(AuthorizationEvents.hash("bob"), AuthorizationEvents.principalHash());
+    }
+
+    private static Token token(String userId) {
+        String payload = "{\"sub\":\"" + userId + "\",\"scim_id\":\"" + userId + "\",\"user_uuid\":\"" + userId
+                + "\",\"sap_id_type\":\"user\",\"iss\":\"https://footenant.accounts400.ondemand.com\"}";
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        String jwt = encoder.encodeToString("{}".getBytes()) + "." + encoder.encodeToString(payload.getBytes())
+                + ".signature";
+        return new SapIdToken(Base64JwtDecoder.getInstance().decode(jwt));
+    }
+}
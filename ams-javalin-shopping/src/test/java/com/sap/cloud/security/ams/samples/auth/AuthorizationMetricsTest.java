@@ -0,0 +1,117 @@
+package com.sap.cloud.security.ams.samples.auth;
+
+import com.sap.cloud.security.ams.AmsTestExtension;
+import com.sap.cloud.security.ams.TestAuthorizationsProvider;
+import com.sap.cloud.security.ams.api.Decision;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static com.sap.cloud.security.ams.samples.auth.AuthorizationMetrics.*;
+import static com.sap.cloud.security.ams.samples.auth.Role.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AuthorizationMetricsTest {
+    @RegisterExtension
+    static AmsTestExtension amsTest = AmsTestExtension.fromLocalDcn();
+    static TestAuthorizationsProvider SHOPPING_POLICIES;
+
+    private SimpleMeterRegistry registry;
+    private AuthorizationMetrics cut;
+
+    @BeforeAll
+    static void beforeAll() {
+        SHOPPING_POLICIES = amsTest.forPackage("shopping");
+    }
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        cut = new AuthorizationMetrics(registry);
+    }
+
+    @Test
+    void testDecisionsAreTimedPerPrivilegeAndOutcome() {
+        Decision granted = SHOPPING_POLICIES.getAuthorizations("ReadProducts")
+                .checkPrivilege(READ_PRODUCTS.asPrivilege());
+        Decision denied = SHOPPING_POLICIES.getAuthorizations("ReadProducts")
+                .checkPrivilege(DELETE_ORDERS.asPrivilege());
+        Decision conditional = SHOPPING_POLICIES.getAuthorizations("ReadOwnOrders")
+                .checkPrivilege(READ_ORDERS.asPrivilege());
+
+        cut.recordDecision(READ_PRODUCTS, granted, 1_000);
+        cut.recordDecision(READ_PRODUCTS, granted, 3_000);
+        cut.recordDecision(DELETE_ORDERS, denied, 1_000);
+        cut.recordDecision(READ_ORDERS, conditional, 1_000);
+
+        Timer readProducts = registry.get(DECISIONS)
+                .tag("privilege", "read:products").tag("outcome", "granted").timer();
+        assertEquals(2, readProducts.count());
+        assertEquals(4_000, readProducts.totalTime(TimeUnit.NANOSECONDS));
+        assertEquals(1, registry.get(DECISIONS)
+                .tag("privilege", "delete:orders").tag("outcome", "denied").timer().count());
+        assertEquals(1, registry.get(DECISIONS)
+                .tag("privilege", "read:orders").tag("outcome", "conditional").timer().count());
+        assertEquals(3, registry.get(DECISIONS).timers().size());
+    }
+
+    @Test
+    void testRouteChecksAreTimedPerPrivilegeAndOutcome() {
+        cut.recordRouteCheck(READ_ORDERS, true, 1_000);
+        cut.recordRouteCheck(READ_ORDERS, true, 1_000);
+        cut.recordRouteCheck(READ_ORDERS, false, 1_000);
+
+        assertEquals(2, registry.get(ROUTE_CHECKS)
+                .tag("privilege", "read:orders").tag("outcome", "granted").timer().count());
+        assertEquals(1, registry.get(ROUTE_CHECKS)
+                .tag("privilege", "read:orders").tag("outcome", "denied").timer().count());
+    }
+
+    @Test
+    void testFilterRecordsDurationAndEvaluationsPerStrategy() {
+        cut.recordFilter("dictionary", 3, 1_000);
+        cut.recordFilter("dictionary", 5, 1_000);
+        cut.recordFilter("sql", 0, 1_000);
+
+        assertEquals(2, registry.get(FILTER).tag("strategy", "dictionary").timer().count());
+        DistributionSummary evaluations = registry.get(FILTER_EVALUATIONS).tag("strategy", "dictionary").summary();
+        assertEquals(2, evaluations.count());
+        assertEquals(8, evaluations.totalAmount());
+        assertEquals(1, registry.get(FILTER_EVALUATIONS).tag("strategy", "sql").summary().count());
+    }
+
+    @Test
+    void testCacheStatisticsAreExposed() {
+        BoundedCache<String, String> cache = new BoundedCache<>(1, Duration.ofMinutes(1));
+        cut.registerCache("test", cache);
+
+        cache.put("a", "1");
+        cache.get("a");
+        cache.get("b");
+        cache.put("b", "2");
+
+        assertEquals(1, registry.get(CACHE_GETS).tag("cache", "test").tag("result", "hit").functionCounter().count());
+        assertEquals(1, registry.get(CACHE_GETS).tag("cache", "test").tag("result", "miss").functionCounter().count());
+        assertEquals(1, registry.get(CACHE_EVICTIONS).tag("cache", "test").functionCounter().count());
+        assertEquals(1, registry.get(CACHE_SIZE).tag("cache", "test").gauge().value());
+    }
+
+    @Test
+    void testRoleDecisionIsRecordedOncePerAuthorizations() {
+        ShoppingAuthorizations authorizations = ShoppingAuthorizations.of(
+                SHOPPING_POLICIES.getAuthorizations("ReadProducts"), cut);
+
+        authorizations.checkRole(READ_PRODUCTS);
+        authorizations.checkRole(READ_PRODUCTS);
+
+        assertEquals(1, registry.get(DECISIONS)
+                .tag("privilege", "read:products").tag("outcome", "granted").timer().count());
+    }
+}
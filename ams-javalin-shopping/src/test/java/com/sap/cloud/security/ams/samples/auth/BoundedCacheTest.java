@@ -0,0 +1,37 @@
+package com.sap.cloud.security.ams.samples.auth;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BoundedCacheTest {
+
+    @Test
+    void testLeastRecentlyUsedEntryIsEvicted() {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(2, Duration.ofMinutes(1));
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.get("a");
+        cache.put("c", 3);
+
+        assertEquals(1, cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(3, cache.get("c"));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    void testExpiredEntryIsReloaded() throws InterruptedException {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(10, Duration.ofMillis(20));
+        assertEquals(1, cache.computeIfAbsent("a", k -> 1));
+        assertEquals(1, cache.computeIfAbsent("a", k -> 2));
+
+        Thread.sleep(50);
+
+        assertEquals(2, cache.computeIfAbsent("a", k -> 2));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+}
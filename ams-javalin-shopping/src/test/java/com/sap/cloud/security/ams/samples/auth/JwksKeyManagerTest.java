@@ -0,0 +1,235 @@
+package com.sap.cloud.security.ams.samples.auth;
+
+import com.sap.cloud.security.xsuaa.client.OAuth2ServiceException;
+import com.sap.cloud.security.xsuaa.client.OAuth2TokenKeyService;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JwksKeyManagerTest {
+    private static final URI JWKS_URI = URI.create("https://tenant.accounts.example.com/oauth2/certs");
+    private static final Map<String, String> PARAMS = Map.of("x-app_tid", "tenant", "x-client_id", "client");
+
+    /**
+     * Local stand-in for the JWKS endpoint of the identity service that returns a
+     * new key set on every fetch and can be taken down
+     */
+    private static class LocalJwks implements OAuth2TokenKeyService {
+        final AtomicInteger fetches = new AtomicInteger();
+        volatile boolean available = true;
+
+        @Override
+        public String retrieveTokenKeys(URI tokenKeysEndpointUri, Map<String, String> params)
+                throws OAuth2ServiceException {
+            if (!available) {
+                throw new OAuth2ServiceException("JWKS endpoint is not available");
+            }
+            return "{\"keys\":[{\"kid\":\"key-" + fetches.incrementAndGet() + "\"}]}";
+        }
+    }
+
+    @Test
+    void testRequestsWithinMinimumIntervalAreServedFromMemory() throws Exception {
+        LocalJwks jwks = new LocalJwks();
+        try (JwksKeyManager keyManager = new JwksKeyManager(jwks, Duration.ofMinutes(5))) {
+            keyManager.prefetch(() -> JWKS_URI, PARAMS).get(3, TimeUnit.SECONDS);
+
+            assertEquals("{\"keys\":[{\"kid\":\"key-1\"}]}", keyManager.retrieveTokenKeys(JWKS_URI, PARAMS));
+            assertEquals("{\"keys\":[{\"kid\":\"key-1\"}]}", keyManager.retrieveTokenKeys(JWKS_URI, PARAMS));
+            assertEquals(1, jwks.fetches.get());
+        }
+    }
+
+    @Test
+    void testPrefetchIsRetriedUntilKeysAreAvailable() throws Exception {
+        LocalJwks jwks = new LocalJwks();
+        jwks.available = false;
+        try (JwksKeyManager keyManager = new JwksKeyManager(jwks, Duration.ofMinutes(5))) {
+            var prefetched = keyManager.prefetch(() -> JWKS_URI, PARAMS);
+            Thread.sleep(100);
+            assertFalse(prefetched.isDone());
+
+            jwks.available = true;
+            prefetched.get(5, TimeUnit.SECONDS);
+            assertEquals(1, keyManager.size());
+        }
+    }
+
+    @Test
+    void testKeysAreRefreshedInTheBackground() throws Exception {
+        LocalJwks jwks = new LocalJwks();
+        try (JwksKeyManager keyManager = new JwksKeyManager(jwks, Duration.ofMillis(20))) {
+            keyManager.retrieveTokenKeys(JWKS_URI, PARAMS);
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(3);
+            while (jwks.fetches.get() < 3 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(jwks.fetches.get() >= 3);
+            assertNotEquals("{\"keys\":[{\"kid\":\"key-1\"}]}", keyManager.retrieveTokenKeys(JWKS_URI, PARAMS));
+        }
+    }
+
+    @Test
+    void testPreviousKeysAreServedWhileRefreshFails() throws Exception {
+        LocalJwks jwks = new LocalJwks();
+        try (JwksKeyManager keyManager = new JwksKeyManager(jwks, Duration.ofMillis(20))) {
+            keyManager.prefetch(() -> JWKS_URI, PARAMS).get(3, TimeUnit.SECONDS);
+            jwks.available = false;
+            Thread.sleep(50); // let a refresh that is in flight complete
+            String keys = keyManager.retrieveTokenKeys(JWKS_URI, PARAMS);
+
+            Thread.sleep(100);
+
+            assertEquals(keys, keyManager.retrieveTokenKeys(JWKS_URI, PARAMS));
+        }
+    }
+
+    @Test
+    void testUnknownKeySetIsFetchedOnRequest() {
+        LocalJwks jwks = new LocalJwks();
+        jwks.available = false;
+        try (JwksKeyManager keyManager = new JwksKeyManager(jwks, Duration.ofMinutes(5))) {
+            assertThrows(OAuth2ServiceException.class, () -> keyManager.retrieveTokenKeys(JWKS_URI, PARAMS));
+
+            jwks.available = true;
+            assertDoesNotThrow(() -> keyManager.retrieveTokenKeys(JWKS_URI, Map.of("x-app_tid", "other")));
+            assertEquals(1, keyManager.size());
+        }
+    }
+
+    @Test
+    void testKnownKeysAreServedFromMemory() throws Exception {
+        LocalJwks jwks = new LocalJwks();
+        try (JwksKeyManager keyManager = new JwksKeyManager(jwks, Duration.ofMinutes(5), Duration.ZERO,
+                Duration.ofHours(1))) {
+            keyManager.prefetch(() -> JWKS_URI, PARAMS).get(3, TimeUnit.SECONDS);
+
+            assertEquals("{\"keys\":[{\"kid\":\"key-1\"}]}", retrieveTokenKeys(keyManager, "key-1"));
+            assertEquals("{\"keys\":[{\"kid\":\"key-1\"}]}", retrieveTokenKeys(keyManager, null));
+            assertEquals(1, jwks.fetches.get());
+        }
+    }
+
+    @Test
+    void testRotatedKeysAreFetchedOnRequest() throws Exception {
+        LocalJwks jwks = new LocalJwks();
+        try (JwksKeyManager keyManager = new JwksKeyManager(jwks, Duration.ofMinutes(5), Duration.ZERO,
+                Duration.ofHours(1))) {
+            keyManager.prefetch(() -> JWKS_URI, PARAMS).get(3, TimeUnit.SECONDS);
+
+            // only a token with a kid that is not in the key set in memory fetches inline
+            assertEquals("{\"keys\":[{\"kid\":\"key-2\"}]}", retrieveTokenKeys(keyManager, "key-2"));
+            assertEquals(2, jwks.fetches.get());
+        }
+    }
+
+    @Test
+    void testUnknownKeysAreFetchedAtMostOncePerInterval() throws Exception {
+        LocalJwks jwks = new LocalJwks();
+        try (JwksKeyManager keyManager = new JwksKeyManager(jwks, Duration.ofMinutes(5))) {
+            keyManager.prefetch(() -> JWKS_URI, PARAMS).get(3, TimeUnit.SECONDS);
+
+            retrieveTokenKeys(keyManager, "unknown");
+            retrieveTokenKeys(keyManager, "unknown");
+
+            assertEquals(1, jwks.fetches.get());
+        }
+    }
+
+    @Test
+    void testPreviousKeysAreServedIfFetchOnRequestFails() throws Exception {
+        LocalJwks jwks = new LocalJwks();
+        try (JwksKeyManager keyManager = new JwksKeyManager(jwks, Duration.ofMinutes(5), Duration.ZERO,
+                Duration.ofHours(1))) {
+            keyManager.prefetch(() -> JWKS_URI, PARAMS).get(3, TimeUnit.SECONDS);
+            jwks.available = false;
+
+            assertEquals("{\"keys\":[{\"kid\":\"key-1\"}]}", retrieveTokenKeys(keyManager, "key-2"));
+        }
+    }
+
+    @Test
+    void testKeyIdOfBearerToken() {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        String header = encoder.encodeToString("{\"alg\":\"RS256\",\"kid\":\"key-1\"}".getBytes(UTF_8));
+        String payload = encoder.encodeToString("{\"sub\":\"user\"}".getBytes(UTF_8));
+
+        assertEquals("key-1", JwksKeyManager.keyIdOf("Bearer " + header + "." + payload + ".signature"));
+        assertNull(JwksKeyManager.keyIdOf("Bearer malformed"));
+        assertNull(JwksKeyManager.keyIdOf("Basic dXNlcjpwYXNzd29yZA=="));
+        assertNull(JwksKeyManager.keyIdOf(null));
+    }
+
+    @Test
+    void testConcurrentRequestsShareOneFetch() throws Exception {
+        CountDownLatch fetching = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger fetches = new AtomicInteger();
+        OAuth2TokenKeyService slowJwks = (uri, params) -> {
+            fetches.incrementAndGet();
+            fetching.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "{\"keys\":[]}";
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try (JwksKeyManager keyManager = new JwksKeyManager(slowJwks, Duration.ofMinutes(5))) {
+            Future<String> first = executor.submit(() -> keyManager.retrieveTokenKeys(JWKS_URI, PARAMS));
+            assertTrue(fetching.await(3, TimeUnit.SECONDS));
+            Future<String> second = executor.submit(() -> keyManager.retrieveTokenKeys(JWKS_URI, PARAMS));
+            Thread.sleep(50);
+            release.countDown();
+
+            assertEquals("{\"keys\":[]}", first.get(3, TimeUnit.SECONDS));
+            assertEquals("{\"keys\":[]}", second.get(3, TimeUnit.SECONDS));
+            assertEquals(1, fetches.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testIdleKeySetsAreDropped() throws Exception {
+        LocalJwks jwks = new LocalJwks();
+        try (JwksKeyManager keyManager = new JwksKeyManager(jwks, Duration.ofMillis(20), Duration.ofSeconds(5),
+                Duration.ofMillis(50))) {
+            keyManager.retrieveTokenKeys(JWKS_URI, PARAMS);
+            assertEquals(1, keyManager.size());
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(3);
+            while (keyManager.size() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, keyManager.size());
+        }
+    }
+
+    /**
+     * Retrieve the token keys like the validation of a token with the kid does
+     */
+    private static String retrieveTokenKeys(JwksKeyManager keyManager, String keyId) {
+        return keyManager.withKeyId(keyId, () -> {
+            try {
+                return keyManager.retrieveTokenKeys(JWKS_URI, PARAMS);
+            } catch (OAuth2ServiceException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+}
@@ -7,6 +7,7 @@ import com.sap.cloud.security.token.SecurityContext;
 import com.sap.cloud.security.xsuaa.jwt.Base64JwtDecoder;
 import com.sap.cloud.security.xsuaa.jwt.DecodedJwt;
 import io.javalin.http.Context;
+import io.javalin.http.UnauthorizedResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,12 +42,20 @@ public class TestAuthHandler extends AuthHandler {
             LOG.info("Successfully mocked SecurityContext.");
             SecurityContext.setToken(sapIdToken);
         } else {
-            ctx.status(401).result("Unauthorized - Missing or invalid Authorization header");
+            // like the production handler, stop the request before its authorization
+            throw new UnauthorizedResponse("Unauthorized - Missing or invalid Authorization header");
         }
     }
 
     @Override
     public AuthorizationManagementService createAmsClient() {
+        return createLocalAmsClient();
+    }
+
+    /**
+     * AMS client with the local DCN and the mock policy assignments of the tests
+     */
+    static AuthorizationManagementService createLocalAmsClient() {
         try {
             LocalAuthorizationManagementServiceConfig amsTestConfig = new LocalAuthorizationManagementServiceConfig()
                     .withPolicyAssignmentsPath(Path.of("src/test/resources/mockPolicyAssignments.json"));
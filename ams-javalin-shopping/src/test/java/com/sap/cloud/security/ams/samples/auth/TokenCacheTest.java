@@ -0,0 +1,169 @@
+package com.sap.cloud.security.ams.samples.auth;
+
+import com.sap.cloud.security.ams.api.AuthorizationManagementService;
+import com.sap.cloud.security.servlet.TokenAuthenticationResult;
+import com.sap.cloud.security.servlet.TokenAuthenticatorResult;
+import com.sap.cloud.security.token.SapIdToken;
+import com.sap.cloud.security.token.SecurityContext;
+import com.sap.cloud.security.token.Token;
+import com.sap.cloud.security.xsuaa.jwt.Base64JwtDecoder;
+import io.javalin.Javalin;
+import io.javalin.http.Context;
+import io.javalin.testtools.JavalinTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenCacheTest {
+    private static final String CLIENT_CERTIFICATE_HEADER = "x-forwarded-client-cert";
+
+    /**
+     * Handler whose token validation accepts any token, counts how often it runs
+     * and can be made to fail
+     */
+    private static class ValidatingAuthHandler extends AuthHandler {
+        final AtomicInteger validations = new AtomicInteger();
+        volatile boolean valid = true;
+
+        @Override
+        protected void setupAuthentication() {
+            // validateRequest is overridden
+        }
+
+        @Override
+        public AuthorizationManagementService createAmsClient() {
+            return TestAuthHandler.createLocalAmsClient();
+        }
+
+        @Override
+        protected TokenCache createTokenCache() {
+            return new TokenCache(10);
+        }
+
+        @Override
+        protected TokenAuthenticationResult validateRequest(Context ctx) {
+            validations.incrementAndGet();
+            if (!valid) {
+                return TokenAuthenticatorResult.createUnauthenticated("Invalid signature");
+            }
+            Token token = decode(ctx.header("Authorization").substring("Bearer ".length()));
+            SecurityContext.setToken(token);
+            return TokenAuthenticatorResult.createAuthenticated(List.of(), token);
+        }
+    }
+
+    private ValidatingAuthHandler authHandler;
+    private Javalin app;
+
+    @BeforeEach
+    void setUp() {
+        authHandler = new ValidatingAuthHandler();
+        app = Javalin.create(config -> {
+            config.routes.beforeMatched(authHandler);
+            config.routes.after(authHandler::clear);
+            config.routes.get("/me", ctx -> ctx.result(SecurityContext.getToken().getClaimAsString("sub")),
+                    Role.AUTHENTICATED);
+        });
+    }
+
+    @Test
+    void testValidatedTokenIsCached() {
+        String jwt = jwt("alice", Instant.now().plusSeconds(600));
+        JavalinTest.test(app, (server, client) -> {
+            for (int i = 0; i < 3; i++) {
+                var response = client.get("/me", req -> req.header("Authorization", "Bearer " + jwt));
+                assertEquals(200, response.code());
+                assertEquals("alice", response.body().string());
+            }
+            assertEquals(1, authHandler.validations.get());
+        });
+    }
+
+    @Test
+    void testExpiredTokenIsValidatedAgain() {
+        String jwt = jwt("alice", Instant.now().plusSeconds(1));
+        JavalinTest.test(app, (server, client) -> {
+            client.get("/me", req -> req.header("Authorization", "Bearer " + jwt));
+            Thread.sleep(2_000);
+            client.get("/me", req -> req.header("Authorization", "Bearer " + jwt));
+
+            assertEquals(2, authHandler.validations.get());
+        });
+    }
+
+    @Test
+    void testTokenWithDifferentClientCertificateIsValidatedAgain() {
+        String jwt = jwt("alice", Instant.now().plusSeconds(600));
+        JavalinTest.test(app, (server, client) -> {
+            client.get("/me", req -> req.header("Authorization", "Bearer " + jwt)
+                    .header(CLIENT_CERTIFICATE_HEADER, "certificate-1"));
+            client.get("/me", req -> req.header("Authorization", "Bearer " + jwt)
+                    .header(CLIENT_CERTIFICATE_HEADER, "certificate-2"));
+            client.get("/me", req -> req.header("Authorization", "Bearer " + jwt));
+
+            assertEquals(3, authHandler.validations.get());
+        });
+        assertNotEquals(TokenCache.keyOf("Bearer " + jwt, "certificate-1"),
+                TokenCache.keyOf("Bearer " + jwt, "certificate-2"));
+        assertNotEquals(TokenCache.keyOf("Bearer " + jwt, null),
+                TokenCache.keyOf("Bearer " + jwt, "certificate-1"));
+    }
+
+    @Test
+    void testFailedValidationIsNotCached() {
+        String jwt = jwt("alice", Instant.now().plusSeconds(600));
+        JavalinTest.test(app, (server, client) -> {
+            authHandler.valid = false;
+            assertEquals(401, client.get("/me", req -> req.header("Authorization", "Bearer " + jwt)).code());
+            assertEquals(401, client.get("/me", req -> req.header("Authorization", "Bearer " + jwt)).code());
+
+            authHandler.valid = true;
+            assertEquals(200, client.get("/me", req -> req.header("Authorization", "Bearer " + jwt)).code());
+            assertEquals(3, authHandler.validations.get());
+        });
+    }
+
+    @Test
+    void testLeastRecentlyUsedTokenIsEvicted() {
+        TokenCache cache = new TokenCache(2);
+        Instant expiration = Instant.now().plusSeconds(600);
+        cache.put("alice", decode(jwt("alice", expiration)));
+        cache.put("bob", decode(jwt("bob", expiration)));
+        cache.get("alice");
+
+        cache.put("carol", decode(jwt("carol", expiration)));
+
+        assertNotNull(cache.get("alice"));
+        assertNull(cache.get("bob"));
+        assertNotNull(cache.get("carol"));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    void testExpiredTokenIsNotCached() {
+        TokenCache cache = new TokenCache(2);
+
+        cache.put("alice", decode(jwt("alice", Instant.now().minusSeconds(1))));
+
+        assertEquals(0, cache.size());
+    }
+
+    private static String jwt(String subject, Instant expiration) {
+        String payload = "{\"sub\":\"" + subject + "\",\"scim_id\":\"" + subject + "\",\"user_uuid\":\"" + subject
+                + "\",\"sap_id_type\":\"user\",\"app_tid\":\"tenant1\","
+                + "\"iss\":\"https://footenant.accounts400.ondemand.com\",\"exp\":" + expiration.getEpochSecond() + "}";
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString("{}".getBytes()) + "." + encoder.encodeToString(payload.getBytes())
+                + ".signature";
+    }
+
+    private static Token decode(String jwt) {
+        return new SapIdToken(Base64JwtDecoder.getInstance().decode(jwt));
+    }
+}
@@ -0,0 +1,59 @@
+package com.sap.cloud.security.ams.samples.db;
+
+import com.sap.cloud.security.ams.samples.model.Order;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ColumnarOrderStoreTest extends OrderStoreContractTest {
+
+    @Override
+    protected OrderStore createStore() {
+        return new ColumnarOrderStore();
+    }
+
+    @Test
+    void testRemoveCompactsAndForEachAfterResumes() {
+        for (int id = 1; id <= 2_000; id++) {
+            store.put(new Order(id, 1, 1, 10.0, "user" + (id % 3)));
+        }
+        // removing more than half of the rows triggers a compaction
+        for (int id = 1; id <= 1_500; id++) {
+            assertTrue(store.remove(id).isPresent());
+        }
+        assertTrue(store.get(1_000).isEmpty());
+        assertEquals(500, store.size());
+
+        store.put(new Order(1_000, 2, 3, 30.0, "user9"));
+        assertEquals(3, store.get(1_000).orElseThrow().getQuantity());
+        assertEquals(List.of(1_000), ids(store.getByCreator("user9")));
+
+        List<Integer> ids = new ArrayList<>();
+        store.forEachAfter(1_000, order -> {
+            ids.add(order.getId());
+            return ids.size() < 300;
+        });
+        assertEquals(300, ids.size());
+        assertEquals(1_501, ids.get(0));
+        assertEquals(1_800, ids.get(299));
+    }
+
+    @Test
+    void testIdsByCreatorEvaluateEachCreatorOnce() {
+        for (int id = 1; id <= 30; id++) {
+            store.put(new Order(id, 1, 1, 10.0, "user" + (id % 3)));
+        }
+        store.remove(3);
+
+        List<String> evaluated = new ArrayList<>();
+        int[] ids = store.getIdsByCreators(creator -> evaluated.add(creator) && creator.equals("user0"));
+
+        assertEquals(3, evaluated.size());
+        assertArrayEquals(new int[] { 6, 9, 12, 15, 18, 21, 24, 27, 30 }, ids);
+        assertArrayEquals(ids, store.getIdsByCreator("user0"));
+        assertArrayEquals(new int[0], store.getIdsByCreator("unknown"));
+    }
+}
@@ -0,0 +1,79 @@
+package com.sap.cloud.security.ams.samples.db;
+
+import com.sap.cloud.security.ams.samples.model.Order;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CreatorIndexTest {
+
+    @Test
+    void testPostingListsStaySorted() {
+        CreatorIndex index = new CreatorIndex();
+        index.add("bob", 5);
+        index.add("alice", 1);
+        index.add("bob", 2);
+        index.add("bob", 9);
+        index.add("bob", 2);
+        index.remove("bob", 5);
+
+        assertEquals(0, index.codeOf("bob"));
+        assertEquals(-1, index.codeOf("carol"));
+        assertArrayEquals(new int[] { 2, 9 }, index.orderIds("bob"));
+        assertArrayEquals(new int[] { 1, 2, 9 }, index.orderIds(createdBy -> true));
+    }
+
+    @Test
+    void testFilterIsEvaluatedOncePerCreator() {
+        SimpleDatabase database = new SimpleDatabase(new InMemoryOrderStore());
+        for (int i = 0; i < 1_000; i++) {
+            database.addOrder(new Order(1, 1, 999.99, i % 10 == 0 ? "zoe" : "user" + (i % 4)));
+        }
+        Order deleted = database.getOrdersByCreators("zoe"::equals).get(0);
+        database.deleteOrder(deleted.getId());
+
+        AtomicInteger evaluations = new AtomicInteger();
+        List<Order> orders = database.getOrdersByCreators(createdBy -> {
+            evaluations.incrementAndGet();
+            return createdBy.equals("zoe");
+        });
+
+        assertEquals(99, orders.size());
+        assertTrue(orders.stream().allMatch(order -> order.getCreatedBy().equals("zoe")));
+        assertTrue(evaluations.get() < 10, "filter evaluated " + evaluations.get() + " times");
+
+        List<Order> page = database.getOrdersByCreatorsAfter("zoe"::equals, orders.get(9).getId(), 5);
+        assertEquals(orders.subList(10, 15).stream().map(Order::getId).toList(),
+                page.stream().map(Order::getId).toList());
+    }
+
+    @Test
+    void testPageFilledInBatches() {
+        SimpleDatabase database = new SimpleDatabase(new InMemoryOrderStore());
+        for (int i = 0; i < 5_000; i++) {
+            database.addOrder(new Order(1, 1, 999.99, i % 10 == 0 ? "zoe" : "user" + (i % 4)));
+        }
+        List<Order> expected = database.getOrdersByCreators("zoe"::equals);
+        AtomicInteger batches = new AtomicInteger();
+
+        List<Order> page = database.getOrdersAfterInBatches(expected.get(99).getId(), 150, batch -> {
+            batches.incrementAndGet();
+            BitSet granted = new BitSet(batch.size());
+            for (int row = 0; row < batch.size(); row++) {
+                granted.set(row, batch.get(row).getCreatedBy().equals("zoe"));
+            }
+            return granted;
+        });
+
+        // the page spans the orders of two batches and the scan stops after the second one
+        assertEquals(expected.subList(100, 250).stream().map(Order::getId).toList(),
+                page.stream().map(Order::getId).toList());
+        assertEquals(2, batches.get());
+        assertTrue(database.getOrdersAfterInBatches(expected.get(expected.size() - 1).getId(), 10,
+                batch -> new BitSet()).isEmpty());
+    }
+}
@@ -0,0 +1,101 @@
+package com.sap.cloud.security.ams.samples.db;
+
+import com.sap.cloud.security.ams.samples.model.Order;
+import com.sap.cloud.security.ams.samples.model.Product;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DataLoaderTest {
+
+    private static final IntObjectMap<Product> PRODUCTS = IntObjectMap.index(List.of(
+            new Product(1, "Laptop", 1000.0, "Electronics"),
+            new Product(2, "Pen", 2.5, "Office")), Product::getId);
+
+    @Test
+    void testParallelLoadMatchesSequentialLoad(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("orders.csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            writer.write("id,productId,quantity,createdBy\n");
+            for (int id = 1; id <= 50_000; id++) {
+                // every 1000th order references an unknown product and is skipped
+                int productId = id % 1000 == 0 ? 99 : id % 2 + 1;
+                writer.write(id + "," + productId + "," + (id % 5 + 1) + ",user" + (id % 7) + "\n");
+            }
+        }
+
+        ConcurrentLinkedQueue<Order> sequential = new ConcurrentLinkedQueue<>();
+        int sequentialCount = DataLoader.loadOrders(Files.newInputStream(file), PRODUCTS, sequential::add);
+        ConcurrentLinkedQueue<Order> parallel = new ConcurrentLinkedQueue<>();
+        int parallelCount = DataLoader.loadOrdersParallel(file, PRODUCTS, parallel::add);
+
+        assertEquals(49_950, sequentialCount);
+        assertEquals(sequentialCount, parallelCount);
+
+        List<Order> expected = sequential.stream().sorted(Comparator.comparingInt(Order::getId)).toList();
+        List<Order> actual = parallel.stream().sorted(Comparator.comparingInt(Order::getId)).toList();
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getId(), actual.get(i).getId());
+            assertEquals(expected.get(i).getTotalAmount(), actual.get(i).getTotalAmount());
+            assertEquals(expected.get(i).getCreatedBy(), actual.get(i).getCreatedBy());
+        }
+    }
+
+    @Test
+    void testParallelLoadReadsQuotedFields(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("orders.csv");
+        Files.writeString(file, "id,productId,quantity,createdBy\n1,1,1,\"doe, jane\"\r\n2,2,4,john\n");
+
+        ConcurrentLinkedQueue<Order> orders = new ConcurrentLinkedQueue<>();
+        int count = DataLoader.loadOrdersParallel(file, PRODUCTS, orders::add);
+
+        assertEquals(2, count);
+        List<Order> sorted = orders.stream().sorted(Comparator.comparingInt(Order::getId)).toList();
+        assertEquals("doe, jane", sorted.get(0).getCreatedBy());
+        assertEquals("john", sorted.get(1).getCreatedBy());
+        assertEquals(10.0, sorted.get(1).getTotalAmount());
+    }
+
+    @Test
+    void testParallelLoadReportsFailedChunks(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("orders.csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            writer.write("id,productId,quantity,createdBy\n");
+            for (int id = 1; id <= 50_000; id++) {
+                // an unterminated quote runs to the end of its chunk
+                String createdBy = id == 25_000 ? "\"user" : "user" + (id % 7);
+                writer.write(id + ",1,1," + createdBy + "\n");
+            }
+        }
+
+        IOException failure = assertThrows(IOException.class,
+                () -> DataLoader.loadOrdersParallel(file, PRODUCTS, order -> {
+                }));
+        assertTrue(failure.getMessage().startsWith("Failed to parse 1 of "));
+    }
+
+    @Test
+    void testDatabaseDiscardsPartiallyLoadedOrders(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("orders.csv");
+        Files.writeString(file, "id,productId,quantity,createdBy\n1,1,1,alice\n2,1,1,\"bob\n");
+        InMemoryOrderStore store = new InMemoryOrderStore();
+
+        System.setProperty("orders.csv", file.toString());
+        try {
+            assertThrows(UncheckedIOException.class, () -> new SimpleDatabase(store));
+        } finally {
+            System.clearProperty("orders.csv");
+        }
+        assertEquals(0, store.size());
+    }
+}
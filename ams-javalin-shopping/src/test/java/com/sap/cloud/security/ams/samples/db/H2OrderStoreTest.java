@@ -0,0 +1,128 @@
+package com.sap.cloud.security.ams.samples.db;
+
+import com.sap.cloud.security.ams.samples.model.Order;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class H2OrderStoreTest extends OrderStoreContractTest {
+
+    @Override
+    protected OrderStore createStore() {
+        return H2OrderStore.createInMemory();
+    }
+
+    private void putOrders() {
+        store.put(new Order(1, 1, 1, 3000.0, "carol"));
+        store.put(new Order(2, 3, 2, 140.0, "bob"));
+        store.put(new Order(3, 2, 1, 400.0, "bob"));
+    }
+
+    @Test
+    void testGetWhereRunsSqlCondition() {
+        putOrders();
+        assertTrue(store.supportsSqlConditions());
+
+        List<Order> orders = store.getWhere("createdBy = ?", List.of("bob"));
+
+        assertEquals(List.of(2, 3), orders.stream().map(Order::getId).toList());
+    }
+
+    @Test
+    void testRepeatedConditionReusesStatements() throws Exception {
+        putOrders();
+        store.put(new Order(4, 1, 1, 3000.0, "carol"));
+
+        // same condition template with different parameters, also from several threads at once
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<Integer>>> results = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                String createdBy = i % 2 == 0 ? "bob" : "carol";
+                results.add(executor.submit(() -> store.getWhere("createdBy = ?", List.of(createdBy)).stream()
+                        .map(Order::getId).toList()));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(i % 2 == 0 ? List.of(2, 3) : List.of(1, 4), results.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(List.of(4), store.getWhereAfter("createdBy = ?", List.of("carol"), 1, 10).stream()
+                .map(Order::getId).toList());
+        assertEquals(List.of(3), store.getWhereAfter("createdBy = ?", List.of("bob"), 2, 10).stream()
+                .map(Order::getId).toList());
+    }
+
+    @Test
+    void testIterationReadsAllBatchesInIdOrder() {
+        putOrders();
+        for (int id = 1_200; id >= 4; id--) {
+            store.put(new Order(id, 1, 1, 10.0, id % 2 == 0 ? "bob" : "carol"));
+        }
+
+        List<Integer> ids = new ArrayList<>();
+        // the action may use the store while iterating, e.g. to look up related data
+        store.forEach(order -> ids.add(store.get(order.getId()).orElseThrow().getId()));
+        assertEquals(1_200, ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(i + 1, ids.get(i));
+        }
+
+        List<Integer> bobsOrders = new ArrayList<>();
+        store.forEachWhere("createdBy = ?", List.of("bob"), order -> bobsOrders.add(order.getId()));
+        assertEquals(601, bobsOrders.size());
+        assertEquals(2, bobsOrders.get(0));
+        assertEquals(1_200, bobsOrders.get(bobsOrders.size() - 1));
+    }
+
+    @Test
+    void testCloseReleasesCachedConnections() {
+        JdbcConnectionPool pool = JdbcConnectionPool.create("jdbc:h2:mem:orders-" + UUID.randomUUID(), "sa", "");
+        try {
+            H2OrderStore h2 = new H2OrderStore(pool);
+            h2.put(new Order(1, 1, 1, 10.0, "bob"));
+            h2.getWhere("createdBy = ?", List.of("bob"));
+            assertEquals(1, pool.getActiveConnections());
+
+            h2.close();
+            assertEquals(0, pool.getActiveConnections());
+
+            // later queries do not keep a connection open
+            assertEquals(1, h2.getWhere("createdBy = ?", List.of("bob")).size());
+            assertEquals(0, pool.getActiveConnections());
+        } finally {
+            pool.dispose();
+        }
+    }
+
+    @Test
+    void testCloseShutsDownInMemoryDatabase() {
+        H2OrderStore h2 = H2OrderStore.createInMemory();
+        h2.put(new Order(1, 1, 1, 10.0, "bob"));
+
+        h2.close();
+
+        assertThrows(IllegalStateException.class, h2::size);
+    }
+
+    @Test
+    void testDatabaseClosesOrderStore() {
+        H2OrderStore h2 = H2OrderStore.createInMemory();
+        SimpleDatabase database = new SimpleDatabase(h2);
+        assertTrue(h2.size() > 0);
+
+        database.close();
+
+        assertThrows(IllegalStateException.class, h2::size);
+    }
+}
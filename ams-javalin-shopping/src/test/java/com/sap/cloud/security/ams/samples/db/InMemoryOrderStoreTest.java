@@ -0,0 +1,9 @@
+package com.sap.cloud.security.ams.samples.db;
+
+public class InMemoryOrderStoreTest extends OrderStoreContractTest {
+
+    @Override
+    protected OrderStore createStore() {
+        return new InMemoryOrderStore();
+    }
+}
@@ -0,0 +1,34 @@
+package com.sap.cloud.security.ams.samples.db;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IntObjectMapTest {
+
+    @Test
+    void testGrowsAndReplaces() {
+        IntObjectMap<String> map = new IntObjectMap<>(2);
+        for (int key = -100; key <= 100; key++) {
+            map.put(key, "v" + key);
+        }
+        assertEquals(201, map.size());
+        assertEquals("v-100", map.get(-100));
+        assertEquals("v0", map.get(0));
+        assertNull(map.get(101));
+
+        assertEquals("v5", map.put(5, "five"));
+        assertEquals("five", map.get(5));
+        assertEquals(201, map.size());
+    }
+
+    @Test
+    void testIndex() {
+        IntObjectMap<String> map = IntObjectMap.index(List.of("a", "bb", "ccc"), String::length);
+        assertEquals(3, map.size());
+        assertEquals("bb", map.get(2));
+        assertNull(map.get(4));
+    }
+}
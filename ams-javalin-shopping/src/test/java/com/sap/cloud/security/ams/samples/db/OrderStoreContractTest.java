@@ -0,0 +1,171 @@
+package com.sap.cloud.security.ams.samples.db;
+
+import com.sap.cloud.security.ams.samples.model.Order;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Behavior that every {@link OrderStore} must provide. Each store has a test
+ * class that extends this one and adds tests for its own features.
+ */
+public abstract class OrderStoreContractTest {
+    protected OrderStore store;
+
+    /**
+     * @return a new, empty store
+     */
+    protected abstract OrderStore createStore();
+
+    @BeforeEach
+    void createEmptyStore() {
+        store = createStore();
+    }
+
+    @AfterEach
+    void closeStore() throws Exception {
+        if (store instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    @Test
+    void testLookupByIdAndCreator() {
+        store.put(new Order(2, 1, 1, 10.0, "bob"));
+        store.put(new Order(1, 1, 1, 10.0, "alice"));
+        store.put(new Order(3, 2, 1, 20.0, "bob"));
+
+        assertEquals(3, store.size());
+        assertEquals("alice", store.get(1).orElseThrow().getCreatedBy());
+        assertEquals(20.0, store.get(3).orElseThrow().getTotalAmount());
+        assertTrue(store.get(4).isEmpty());
+        assertEquals(List.of(2, 3), ids(store.getByCreator("bob")));
+        assertTrue(store.getByCreator("carol").isEmpty());
+        assertEquals(List.of(1, 2, 3), ids(store.getAll()));
+
+        assertTrue(store.remove(2).isPresent());
+        assertTrue(store.remove(2).isEmpty());
+        assertEquals(List.of(3), ids(store.getByCreator("bob")));
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    void testForEachInIdOrder() {
+        store.put(new Order(3, 1, 1, 10.0, "bob"));
+        store.put(new Order(1, 1, 1, 10.0, "alice"));
+        store.put(new Order(2, 2, 1, 20.0, "bob"));
+
+        List<Integer> ids = new ArrayList<>();
+        store.forEach(order -> ids.add(order.getId()));
+        assertEquals(List.of(1, 2, 3), ids);
+    }
+
+    @Test
+    void testForEachAfterResumesAndStops() {
+        for (int id = 10; id >= 1; id--) {
+            store.put(new Order(id, 1, 1, 10.0, "bob"));
+        }
+        store.remove(5);
+
+        List<Integer> ids = new ArrayList<>();
+        store.forEachAfter(3, order -> ids.add(order.getId()) && ids.size() < 4);
+        assertEquals(List.of(4, 6, 7, 8), ids);
+    }
+
+    @Test
+    void testReplacedOrderMovesToNewCreator() {
+        store.put(new Order(1, 1, 1, 10.0, "alice"));
+        store.put(new Order(2, 1, 1, 10.0, "bob"));
+        store.put(new Order(3, 1, 1, 10.0, "bob"));
+        store.put(new Order(2, 1, 2, 20.0, "alice"));
+
+        assertEquals(3, store.size());
+        assertEquals(2, store.get(2).orElseThrow().getQuantity());
+        assertEquals(List.of(1, 2), ids(store.getByCreator("alice")));
+        assertArrayEquals(new int[] { 1, 2 }, store.getIdsByCreator("alice"));
+        assertArrayEquals(new int[] { 3 }, store.getIdsByCreator("bob"));
+        assertArrayEquals(new int[0], store.getIdsByCreator("carol"));
+    }
+
+    @Test
+    void testIdsByCreatorsInIdOrder() {
+        for (int id = 30; id >= 1; id--) {
+            store.put(new Order(id, 1, 1, 10.0, "user" + (id % 3)));
+        }
+        store.remove(3);
+
+        assertArrayEquals(new int[] { 6, 9, 12, 15, 18, 21, 24, 27, 30 }, store.getIdsByCreators("user0"::equals));
+        assertEquals(20, store.getIdsByCreators(createdBy -> !createdBy.equals("user0")).length);
+        assertArrayEquals(new int[0], store.getIdsByCreators(createdBy -> false));
+    }
+
+    @Test
+    void testReaddedOrdersAreIteratedOnceInIdOrder() {
+        store.put(new Order(1, 1, 1, 10.0, "alice"));
+        store.put(new Order(2, 1, 1, 10.0, "bob"));
+        store.put(new Order(3, 1, 1, 10.0, "bob"));
+        store.remove(2);
+        store.put(new Order(2, 2, 1, 20.0, "alice"));
+        store.put(new Order(5, 1, 1, 10.0, "bob"));
+        store.put(new Order(4, 1, 1, 10.0, "bob"));
+        store.remove(3);
+
+        assertEquals(List.of(1, 2, 4, 5), ids(store.getAll()));
+        List<Integer> ids = new ArrayList<>();
+        store.forEachAfter(1, order -> ids.add(order.getId()) && order.getId() < 4);
+        assertEquals(List.of(2, 4), ids);
+    }
+
+    @Test
+    void testClear() {
+        store.put(new Order(1, 1, 1, 10.0, "alice"));
+        store.put(new Order(2, 1, 1, 10.0, "bob"));
+
+        store.clear();
+
+        assertEquals(0, store.size());
+        assertTrue(store.get(1).isEmpty());
+        assertTrue(store.getByCreator("bob").isEmpty());
+        assertArrayEquals(new int[0], store.getIdsByCreators(createdBy -> true));
+
+        store.put(new Order(1, 1, 1, 10.0, "bob"));
+        assertEquals(List.of(1), ids(store.getByCreator("bob")));
+    }
+
+    @Test
+    void testConcurrentInsertAndDelete() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        for (int i = 1; i <= 10_000; i++) {
+            int id = i;
+            executor.submit(() -> {
+                store.put(new Order(id, 1, 1, 10.0, "user" + (id % 10)));
+                if (id % 2 == 0) {
+                    store.remove(id);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+
+        assertEquals(5_000, store.size());
+        int indexedByCreator = 0;
+        for (int u = 0; u < 10; u++) {
+            indexedByCreator += store.getByCreator("user" + u).size();
+        }
+        assertEquals(5_000, indexedByCreator);
+        assertEquals(5_000, store.getIdsByCreators(createdBy -> true).length);
+    }
+
+    protected static List<Integer> ids(List<Order> orders) {
+        return orders.stream().map(Order::getId).toList();
+    }
+}
@@ -0,0 +1,83 @@
+package com.sap.cloud.security.ams.samples.db;
+
+import com.sap.cloud.security.ams.samples.model.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SimpleDatabasePersistenceTest {
+
+    @Test
+    void testRestoreSnapshotAndReplayLog(@TempDir Path dataDir) {
+        SimpleDatabase database = new SimpleDatabase(new InMemoryOrderStore(), dataDir);
+        List<Integer> initialIds = orderIds(database);
+        Order added = database.addOrder(new Order(1, 2, 1999.98, "alice"));
+        assertTrue(database.deleteOrder(initialIds.get(0)));
+        List<Integer> expectedIds = orderIds(database);
+        // no close(), so the changes are only in the write-ahead log
+
+        SimpleDatabase restarted = new SimpleDatabase(new InMemoryOrderStore(), dataDir);
+        assertEquals(expectedIds, orderIds(restarted));
+        assertEquals(database.getProducts().size(), restarted.getProducts().size());
+        assertEquals("alice", restarted.getOrderById(added.getId()).orElseThrow().getCreatedBy());
+        assertEquals(added.getId() + 1, restarted.addOrder(new Order(1, 1, 999.99, "bob")).getId());
+    }
+
+    @Test
+    void testCloseWritesSnapshot(@TempDir Path dataDir) throws IOException {
+        SimpleDatabase database = new SimpleDatabase(new InMemoryOrderStore(), dataDir);
+        database.addOrder(new Order(1, 1, 999.99, "alice"));
+        database.close();
+
+        assertEquals(0, Files.size(dataDir.resolve("orders.wal")));
+        DatabaseSnapshot snapshot = DatabaseSnapshot.read(dataDir.resolve("snapshot.bin"));
+        assertEquals(database.getOrders().size(), snapshot.getOrderCount());
+    }
+
+    @Test
+    void testIncompleteLogRecordIsDiscarded(@TempDir Path dataDir) throws IOException {
+        SimpleDatabase database = new SimpleDatabase(new InMemoryOrderStore(), dataDir);
+        Order added = database.addOrder(new Order(1, 1, 999.99, "alice"));
+        long logSize = Files.size(dataDir.resolve("orders.wal"));
+        // simulate a crash in the middle of appending the next record
+        Files.write(dataDir.resolve("orders.wal"), new byte[] { 0, 0, 0, 30, 1, 0 }, StandardOpenOption.APPEND);
+
+        SimpleDatabase restarted = new SimpleDatabase(new InMemoryOrderStore(), dataDir);
+        assertTrue(restarted.getOrderById(added.getId()).isPresent());
+        assertEquals(logSize, Files.size(dataDir.resolve("orders.wal")));
+    }
+
+    @Test
+    void testLogIsNotReplayedOnInitialData(@TempDir Path dataDir) throws IOException {
+        SimpleDatabase database = new SimpleDatabase(new InMemoryOrderStore(), dataDir);
+        List<Integer> initialIds = orderIds(database);
+        database.addOrder(new Order(1, 1, 999.99, "alice"));
+        assertTrue(database.deleteOrder(initialIds.get(0)));
+        // simulate a corrupt snapshot, the restart falls back to the initial data
+        Files.write(dataDir.resolve("snapshot.bin"), new byte[] { 1, 2, 3 });
+
+        SimpleDatabase restarted = new SimpleDatabase(new InMemoryOrderStore(), dataDir);
+        assertEquals(initialIds, orderIds(restarted));
+        assertEquals(0, Files.size(dataDir.resolve("orders.wal")));
+        assertTrue(Files.size(dataDir.resolve("orders.wal.discarded")) > 0);
+    }
+
+    @Test
+    void testDeleteOfUnknownOrderIsNotLogged(@TempDir Path dataDir) throws IOException {
+        SimpleDatabase database = new SimpleDatabase(new InMemoryOrderStore(), dataDir);
+
+        assertFalse(database.deleteOrder(Integer.MAX_VALUE));
+        assertEquals(0, Files.size(dataDir.resolve("orders.wal")));
+    }
+
+    private static List<Integer> orderIds(SimpleDatabase database) {
+        return database.getOrders().stream().map(Order::getId).toList();
+    }
+}
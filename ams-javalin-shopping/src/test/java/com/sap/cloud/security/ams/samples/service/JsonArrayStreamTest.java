@@ -0,0 +1,58 @@
+package com.sap.cloud.security.ams.samples.service;
+
+import io.javalin.Javalin;
+import io.javalin.testtools.JavalinTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JsonArrayStreamTest {
+    private static Javalin app(Consumer<Consumer<Object>> elements) {
+        return Javalin.create(config -> config.routes.get("/items",
+                ctx -> JsonArrayStream.write(ctx, elements)));
+    }
+
+    @Test
+    public void testWritesCompleteArray() {
+        JavalinTest.test(app(response -> {
+            response.accept(Map.of("id", 1));
+            response.accept(Map.of("id", 2));
+        }), (server, client) -> {
+            var response = client.get("/items");
+            assertEquals(200, response.code());
+            assertEquals("[{\"id\":1},{\"id\":2}]", response.body().string());
+        });
+    }
+
+    @Test
+    public void testFailureBeforeCommitFailsRequest() {
+        JavalinTest.test(app(response -> {
+            response.accept(Map.of("id", 1));
+            throw new IllegalStateException("database is not available");
+        }), (server, client) -> {
+            var response = client.get("/items");
+            assertEquals(500, response.code());
+            assertFalse(response.body().string().startsWith("[{\"id\":1}"));
+        });
+    }
+
+    @Test
+    public void testFailureAfterCommitLeavesArrayUnterminated() {
+        JavalinTest.test(app(response -> {
+            // more than the response buffer, so the status has been sent
+            for (int i = 0; i < 20_000; i++) {
+                response.accept(Map.of("id", i));
+            }
+            throw new IllegalStateException("database is not available");
+        }), (server, client) -> {
+            var response = client.get("/items");
+            assertEquals(200, response.code());
+            String body = response.body().string();
+            assertTrue(body.startsWith("[{\"id\":0}"));
+            assertFalse(body.endsWith("]"));
+        });
+    }
+}
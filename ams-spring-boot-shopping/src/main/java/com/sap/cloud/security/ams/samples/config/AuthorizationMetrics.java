@@ -0,0 +1,128 @@
+package com.sap.cloud.security.ams.samples.config;
+
+import com.sap.cloud.security.ams.api.Decision;
+import com.sap.cloud.security.ams.api.Privilege;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.authorization.AuthorizationResult;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer meters for the AMS authorization of the shopping application, exported via Actuator
+ * (e.g. {@code /actuator/prometheus}).
+ *
+ * <ul>
+ * <li>{@value #DECISIONS}: timer per privilege and outcome (granted, denied, conditional) of each evaluated
+ * privilege check, i.e. of the route-level checks that are not answered from the route cache and of the
+ * programmatic checks in the services</li>
+ * <li>{@value #ROUTE_CHECKS}: timer per privilege and outcome of the route-level checks configured in
+ * {@link SecurityConfiguration}</li>
+ * <li>{@value #FILTER}: timer per strategy of the authorization filtering in GET /orders</li>
+ * <li>{@value #FILTER_EVALUATIONS}: histogram of the number of condition evaluations per filtered
+ * request</li>
+ * </ul>
+ *
+ * Privileges are tagged as {@code action:resource}, e.g. {@code read:orders}. Each meter is registered on its
+ * first use and then looked up by its tags, so recording does not build meters on the request path.
+ */
+@Component
+public class AuthorizationMetrics {
+    public static final String DECISIONS = "ams.authorization.decisions";
+    public static final String ROUTE_CHECKS = "ams.authorization.route";
+    public static final String FILTER = "shopping.orders.filter";
+    public static final String FILTER_EVALUATIONS = "shopping.orders.filter.evaluations";
+
+    private final MeterRegistry registry;
+    private final Map<Outcome, Timer> decisionTimers = new ConcurrentHashMap<>();
+    private final Map<Outcome, Timer> routeTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> filterTimers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> filterEvaluations = new ConcurrentHashMap<>();
+
+    public AuthorizationMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Record the evaluation of a privilege check
+     */
+    public void recordDecision(Privilege privilege, Decision decision, long durationNanos) {
+        recordDecision(privilege, outcome(decision), durationNanos);
+    }
+
+    /**
+     * Record the evaluation of a route-level privilege check. Spring Security only sees whether access was
+     * granted, so for prechecks the outcome granted includes conditional grants.
+     *
+     * @param result result of the check, null if the check abstained
+     */
+    public void recordDecision(Privilege privilege, AuthorizationResult result, long durationNanos) {
+        recordDecision(privilege, outcome(result), durationNanos);
+    }
+
+    private void recordDecision(Privilege privilege, String outcome, long durationNanos) {
+        Outcome tags = new Outcome(privilege.toAuthority(), outcome);
+        decisionTimers.computeIfAbsent(tags, key -> Timer.builder(DECISIONS)
+                .description("Evaluation of AMS privilege checks")
+                .tag("privilege", key.privilege())
+                .tag("outcome", key.outcome())
+                .register(registry))
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Record a route-level access check
+     *
+     * @param result result of the check, null if the check abstained
+     */
+    public void recordRouteCheck(Privilege privilege, AuthorizationResult result, long durationNanos) {
+        Outcome tags = new Outcome(privilege.toAuthority(), outcome(result));
+        routeTimers.computeIfAbsent(tags, key -> Timer.builder(ROUTE_CHECKS)
+                .description("Route-level AMS access checks")
+                .tag("privilege", key.privilege())
+                .tag("outcome", key.outcome())
+                .register(registry))
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Record the authorization filtering of a set of entities
+     *
+     * @param strategy    how the condition was applied, e.g. "sql" or "dictionary"
+     * @param evaluations number of times the condition was evaluated in Java
+     */
+    public void recordFilter(String strategy, long evaluations, long durationNanos) {
+        filterTimers.computeIfAbsent(strategy, key -> Timer.builder(FILTER)
+                .description("Authorization filtering of orders")
+                .tag("strategy", key)
+                .register(registry))
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+        filterEvaluations.computeIfAbsent(strategy, key -> DistributionSummary.builder(FILTER_EVALUATIONS)
+                .description("Condition evaluations per filtered request")
+                .tag("strategy", key)
+                .publishPercentileHistogram()
+                .register(registry))
+                .record(evaluations);
+    }
+
+    static String outcome(Decision decision) {
+        if (decision.isGranted()) {
+            return "granted";
+        }
+        return decision.isDenied() ? "denied" : "conditional";
+    }
+
+    static String outcome(AuthorizationResult result) {
+        if (result == null) {
+            return "abstained";
+        }
+        return result.isGranted() ? "granted" : "denied";
+    }
+
+    private record Outcome(String privilege, String outcome) {
+    }
+}
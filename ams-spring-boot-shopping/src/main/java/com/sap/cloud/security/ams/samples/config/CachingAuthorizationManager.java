@@ -0,0 +1,54 @@
+package com.sap.cloud.security.ams.samples.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.authorization.AuthorizationResult;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.core.AbstractOAuth2Token;
+
+import java.util.function.Supplier;
+
+/**
+ * Decorator for context-free route-level AMS checks, such as
+ * {@code AmsRouteSecurity#checkPrivilege} and {@code AmsRouteSecurity#precheckPrivilege}.
+ *
+ * <p>
+ * The result of a context-free check only changes when the policies of the principal change,
+ * so it is cached per principal token for a limited time instead of being evaluated on every
+ * request. Requests without an OAuth2 token are always delegated.
+ *
+ * @param <T> the type of object being authorized
+ */
+public class CachingAuthorizationManager<T> implements AuthorizationManager<T> {
+    private final AuthorizationManager<T> delegate;
+    private final Cache<String, AuthorizationResult> results;
+
+    /**
+     * @param delegate context-free check whose results are cached
+     * @param results  cache of the results per token value, e.g. bounded in size and with a time to live,
+     *                 see {@link RouteCheckCaches}
+     */
+    public CachingAuthorizationManager(AuthorizationManager<T> delegate, Cache<String, AuthorizationResult> results) {
+        this.delegate = delegate;
+        this.results = results;
+    }
+
+    @Override
+    public AuthorizationResult authorize(Supplier<Authentication> authentication, T object) {
+        Authentication auth = authentication.get();
+        if (auth == null || !(auth.getCredentials() instanceof AbstractOAuth2Token token)) {
+            return delegate.authorize(() -> auth, object);
+        }
+
+        // abstaining checks (null) are not cached
+        return results.get(token.getTokenValue(), key -> delegate.authorize(() -> auth, object));
+    }
+
+    // no @Override: check(..) is deprecated in favor of authorize(..) and removed in Spring Security 7
+    @Deprecated
+    public AuthorizationDecision check(Supplier<Authentication> authentication, T object) {
+        AuthorizationResult result = authorize(authentication, object);
+        return result == null ? null : new AuthorizationDecision(result.isGranted());
+    }
+}
@@ -0,0 +1,65 @@
+package com.sap.cloud.security.ams.samples.config;
+
+import com.sap.cloud.security.ams.samples.db.ColumnarOrderStore;
+import com.sap.cloud.security.ams.samples.db.H2OrderStore;
+import com.sap.cloud.security.ams.samples.db.InMemoryOrderStore;
+import com.sap.cloud.security.ams.samples.db.OrderStore;
+import com.sap.cloud.security.ams.samples.db.SimpleDatabase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+/**
+ * Database configuration for the Shopping application.
+ *
+ * <p>
+ * The order store is selected with the {@code shopping.orders.store} property:
+ * <ul>
+ * <li>{@code memory} (default): in-memory store, conditional reads are filtered in Java</li>
+ * <li>{@code columnar}: in-memory store with the order attributes in primitive
+ * arrays, for large numbers of orders with a fraction of the heap</li>
+ * <li>{@code h2}: embedded H2 database, conditional reads run the SQL condition
+ * generated from the AMS decision</li>
+ * </ul>
+ *
+ * <p>
+ * If {@code shopping.data-dir} is set, the database keeps its state in a
+ * snapshot and a write-ahead log in that directory across restarts. The
+ * snapshot is rewritten when the application context is closed.
+ */
+@Configuration
+public class DatabaseConfiguration {
+    private static final Logger LOG = LoggerFactory.getLogger(DatabaseConfiguration.class);
+
+    @Bean(destroyMethod = "close")
+    public SimpleDatabase simpleDatabase(@Value("${shopping.orders.store:memory}") String orderStoreType,
+            @Value("${shopping.data-dir:}") String dataDir) {
+        SimpleDatabase database;
+        if (dataDir.isEmpty()) {
+            database = new SimpleDatabase(createOrderStore(orderStoreType));
+        } else {
+            LOG.info("Using persistent database in {}", dataDir);
+            database = new SimpleDatabase(createOrderStore(orderStoreType), Path.of(dataDir));
+        }
+        return database;
+    }
+
+    private OrderStore createOrderStore(String orderStoreType) {
+        switch (orderStoreType) {
+            case "h2":
+                LOG.info("Using embedded H2 order store");
+                return H2OrderStore.createInMemory();
+            case "columnar":
+                LOG.info("Using columnar in-memory order store");
+                return new ColumnarOrderStore();
+            case "memory":
+                return new InMemoryOrderStore();
+            default:
+                throw new IllegalArgumentException("Unknown order store type: " + orderStoreType);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.sap.cloud.security.ams.samples.config;
+
+import com.sap.cloud.security.ams.api.Decision;
+import com.sap.cloud.security.ams.samples.db.SimpleDatabase;
+import com.sap.cloud.security.ams.samples.model.Order;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import static com.sap.cloud.security.ams.samples.config.AmsAttributes.ORDER_CREATED_BY;
+
+/**
+ * Compiles a read:orders {@link Decision} into a {@link Predicate} over {@link Order} entities.
+ *
+ * <p>
+ * Policies for read:orders can only restrict {@code order.createdBy}, so the residual condition of a
+ * conditional decision is a function of that single attribute. The compiled predicate evaluates the
+ * condition once per distinct {@code createdBy} value and answers all further orders of the same creator
+ * from a lookup table, without building an attribute map per order.
+ *
+ * <p>
+ * The returned predicate is meant to be created once per request and is not thread-safe.
+ */
+public final class OrderPredicates {
+
+    private OrderPredicates() {
+    }
+
+    /**
+     * Compile the decision into an order predicate
+     *
+     * @param decision Decision for read:orders without entity attributes
+     * @return predicate that accepts the orders granted by the decision
+     */
+    public static Predicate<Order> compile(Decision decision) {
+        if (decision.isGranted()) {
+            return order -> true;
+        }
+        if (decision.isDenied()) {
+            return order -> false;
+        }
+
+        Map<String, Boolean> grantedByCreator = new HashMap<>();
+        Predicate<String> isGranted = compileCreatorFilter(decision);
+        Function<String, Boolean> evaluate = isGranted::test;
+        return order -> grantedByCreator.computeIfAbsent(order.getCreatedBy(), evaluate);
+    }
+
+    /**
+     * Evaluate the decision for a batch of orders at once. The {@code createdBy} values of the batch are
+     * dictionary-encoded into a column of codes, the condition is evaluated once per distinct value and the
+     * granted rows are found by a scan over the code column.
+     *
+     * @param decision Decision for read:orders without entity attributes
+     * @param orders   batch of orders, rows are numbered in iteration order
+     * @return the rows of the orders that are granted by the decision
+     */
+    public static BitSet filterOrders(Decision decision, Collection<Order> orders) {
+        return compileCreatorFilter(decision).filterOrders(orders);
+    }
+
+    /**
+     * Find the creator if the decision only grants the orders of one creator, e.g. for ReadOwnOrders. Then the
+     * orders of that creator can be looked up directly instead of testing every creator.
+     *
+     * <p>
+     * The candidate is the only value of the condition, e.g. the single parameter of its SQL condition. It is
+     * confirmed with the decision itself: an equality comparison grants the candidate but neither the empty
+     * value nor the value right after the candidate, which every other comparison with a single value does.
+     * Candidates with LIKE wildcards are not confirmed, so the caller falls back to testing every creator.
+     *
+     * @param decision Decision for read:orders without entity attributes
+     * @param values   values of the condition of the decision
+     * @return the only creator whose orders are granted by the decision, or empty if it is not known
+     */
+    public static Optional<String> singleCreator(Decision decision, List<?> values) {
+        if (decision.isGranted() || decision.isDenied() || values.size() != 1
+                || !(values.get(0) instanceof String createdBy)) {
+            return Optional.empty();
+        }
+        if (createdBy.isEmpty() || createdBy.indexOf('%') >= 0 || createdBy.indexOf('_') >= 0) {
+            return Optional.empty();
+        }
+        if (isGranted(decision, createdBy) && !isGranted(decision, "") && !isGranted(decision, createdBy + '\0')) {
+            return Optional.of(createdBy);
+        }
+        return Optional.empty();
+    }
+
+    private static boolean isGranted(Decision decision, String createdBy) {
+        return decision.apply(Map.of(ORDER_CREATED_BY, createdBy)).isGranted();
+    }
+
+    /**
+     * Compile the decision into a predicate over {@code order.createdBy} values, e.g. for
+     * {@link SimpleDatabase#forEachOrderByCreators}. The condition is evaluated on each test, so the
+     * predicate is meant for distinct creators such as the entries of a dictionary. It is thread-safe.
+     *
+     * @param decision Decision for read:orders without entity attributes
+     * @return predicate that accepts the creators whose orders are granted by the decision
+     */
+    public static CreatorFilter compileCreatorFilter(Decision decision) {
+        return new CreatorFilter(decision);
+    }
+
+    /**
+     * Predicate over {@code order.createdBy} values that counts how often it evaluated the condition of the
+     * decision, e.g. for the {@link AuthorizationMetrics#FILTER_EVALUATIONS} of a request. Unconditional
+     * decisions are answered without evaluation.
+     */
+    public static final class CreatorFilter implements Predicate<String> {
+        private final Decision decision;
+        private final LongAdder evaluations = new LongAdder();
+
+        private CreatorFilter(Decision decision) {
+            this.decision = decision;
+        }
+
+        @Override
+        public boolean test(String createdBy) {
+            if (decision.isGranted()) {
+                return true;
+            }
+            if (decision.isDenied()) {
+                return false;
+            }
+            evaluations.increment();
+            return decision.apply(Map.of(ORDER_CREATED_BY, createdBy)).isGranted();
+        }
+
+        /**
+         * Filter a batch of orders with a single evaluation of the condition per distinct creator of the
+         * batch, see {@link OrderPredicates#filterOrders(Decision, Collection)}
+         *
+         * @param orders batch of orders, rows are numbered in iteration order
+         * @return the rows of the orders whose creator passes the filter
+         */
+        public BitSet filterOrders(Collection<Order> orders) {
+            BitSet granted = new BitSet(orders.size());
+            if (decision.isGranted()) {
+                granted.set(0, orders.size());
+                return granted;
+            }
+            if (decision.isDenied() || orders.isEmpty()) {
+                return granted;
+            }
+
+            int[] codes = new int[orders.size()];
+            Map<String, Integer> codesByCreator = new HashMap<>();
+            List<String> creators = new ArrayList<>();
+            int row = 0;
+            for (Order order : orders) {
+                Integer code = codesByCreator.get(order.getCreatedBy());
+                if (code == null) {
+                    code = creators.size();
+                    codesByCreator.put(order.getCreatedBy(), code);
+                    creators.add(order.getCreatedBy());
+                }
+                codes[row++] = code;
+            }
+
+            boolean[] grantedCodes = new boolean[creators.size()];
+            for (int code = 0; code < grantedCodes.length; code++) {
+                grantedCodes[code] = test(creators.get(code));
+            }
+            for (row = 0; row < codes.length; row++) {
+                if (grantedCodes[codes[row]]) {
+                    granted.set(row);
+                }
+            }
+            return granted;
+        }
+
+        /**
+         * @return number of evaluations of the condition so far
+         */
+        public long evaluations() {
+            return evaluations.sum();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.sap.cloud.security.ams.samples.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sap.cloud.security.ams.api.Privilege;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.security.authorization.AuthorizationResult;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches of the results of the context-free route-level AMS checks, one per privilege, for the
+ * {@link CachingAuthorizationManager}s of the {@link SecurityConfiguration}.
+ *
+ * <p>
+ * Cached results become stale when the policy assignments of a principal change. They expire after
+ * their time to live, or all at once with {@code DELETE /actuator/routechecks}, e.g. called by the
+ * process that changes the assignments.
+ */
+@Endpoint(id = "routechecks")
+public class RouteCheckCaches {
+    private static final Logger LOG = LoggerFactory.getLogger(RouteCheckCaches.class);
+
+    private final Map<Privilege, Cache<String, AuthorizationResult>> caches = new ConcurrentHashMap<>();
+    private final Duration ttl;
+    private final int maxSize;
+
+    /**
+     * @param ttl     time to live of a cached result, zero disables the caches
+     * @param maxSize maximum number of cached principals per privilege
+     */
+    public RouteCheckCaches(Duration ttl, int maxSize) {
+        this.ttl = ttl;
+        this.maxSize = maxSize;
+    }
+
+    public boolean isEnabled() {
+        return !ttl.isZero() && !ttl.isNegative();
+    }
+
+    /**
+     * @return the cache of the results of the route checks for the privilege
+     */
+    public Cache<String, AuthorizationResult> forPrivilege(Privilege privilege) {
+        return caches.computeIfAbsent(privilege, p -> Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build());
+    }
+
+    /**
+     * Drop all cached results, e.g. after policy assignments have changed
+     */
+    @DeleteOperation
+    public void invalidateAll() {
+        caches.values().forEach(Cache::invalidateAll);
+        LOG.info("Invalidated the cached route checks of {} privileges", caches.size());
+    }
+}
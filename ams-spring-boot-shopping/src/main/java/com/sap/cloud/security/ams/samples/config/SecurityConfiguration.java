@@ -1,15 +1,22 @@
 package com.sap.cloud.security.ams.samples.config;
 
+import com.sap.cloud.security.ams.api.Privilege;
 import com.sap.cloud.security.ams.spring.AmsRouteSecurity;
 import com.sap.cloud.security.spring.config.IdentityServicesPropertySourceFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.PropertySource;
+import org.springframework.security.authorization.AuthorizationManager;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+
+import java.time.Duration;
 
 import static com.sap.cloud.security.ams.samples.config.Privileges.*;
 import static org.springframework.http.HttpMethod.*;
@@ -25,6 +32,11 @@ import static org.springframework.http.HttpMethod.*;
  * <li>Integrates with AMS through the amsAuthenticationConverter</li>
  * <li>Uses Privilege constants with toAuthority() to check for
  * "action:resource" authorities</li>
+ * <li>Caches the results of the context-free route-level AMS checks per principal
+ * in the {@link RouteCheckCaches} (configured via
+ * {@code shopping.authorization.route-cache.*})</li>
+ * <li>Records the duration and outcome of the route-level AMS checks in the
+ * {@link AuthorizationMetrics}</li>
  * </ul>
  */
 @Configuration
@@ -33,28 +45,40 @@ import static org.springframework.http.HttpMethod.*;
 @PropertySource(factory = IdentityServicesPropertySourceFactory.class, ignoreResourceNotFound = true, value = {""})
 public class SecurityConfiguration {
 
+    @Autowired
+    private AuthorizationMetrics authorizationMetrics;
+
+    @Bean
+    public RouteCheckCaches routeCheckCaches(
+            @Value("${shopping.authorization.route-cache.ttl-seconds:60}") long ttlSeconds,
+            @Value("${shopping.authorization.route-cache.max-size:10000}") int maxSize) {
+        return new RouteCheckCaches(Duration.ofSeconds(Math.max(0, ttlSeconds)), maxSize);
+    }
+
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http, AmsRouteSecurity via) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, AmsRouteSecurity via, RouteCheckCaches caches)
+            throws Exception {
         http.authorizeHttpRequests(authz -> {
                     // Public endpoints - Spring Boot Actuator health check
                     authz.requestMatchers(GET, "/actuator/health").permitAll();
+                    // Metrics scrape endpoint, the scraper authenticates with a token, e.g. of a technical user
+                    authz.requestMatchers(GET, "/actuator/prometheus").authenticated();
+                    // Drops the cached route checks, e.g. after policy assignments have changed
+                    authz.requestMatchers(DELETE, "/actuator/routechecks").authenticated();
 
                     // Authenticated endpoints without authorization checks
                     authz.requestMatchers(GET, "/privileges").authenticated();
 
-                    // CHOOSE ONE idiom below (route-level authorization + service-level filtering vs. full service-level authorization
-
-                    // Idiom 1 (Full service-level authorization): these endpoints are protected with AMS method-level security
-                    authz.requestMatchers(GET, "/products").authenticated();
-                    authz.requestMatchers(GET, "/orders").authenticated();
-                    authz.requestMatchers(POST, "/orders").authenticated();
-                    authz.requestMatchers(DELETE, "/orders/**").authenticated();
-
-                    // Idiom 2 (route-level authorization + service-level filtering) Showcases alternative endpoint protection via AMS route-level security (+ service-level filtering)
-                    authz.requestMatchers(GET, "/products").access(via.checkPrivilege(READ_PRODUCTS));
-                    authz.requestMatchers(GET, "/orders").access(via.precheckPrivilege(READ_ORDERS));
-                    authz.requestMatchers(POST, "/orders").access(via.precheckPrivilege(CREATE_ORDERS));
-                    authz.requestMatchers(DELETE, "/orders/**").access(via.checkPrivilege(DELETE_ORDERS));
+                    // Route-level authorization (+ service-level filtering): the cached route checks reject requests early,
+                    // the AMS method-level security of the services still applies on top.
+                    // Unlike in earlier versions of this sample, where the .authenticated() rules of full service-level
+                    // authorization matched first, this idiom is active. For full service-level authorization instead,
+                    // replace the rules below with .authenticated(), as Spring Security only applies the first rule
+                    // that matches a request.
+                    authz.requestMatchers(GET, "/products").access(route(READ_PRODUCTS, via.checkPrivilege(READ_PRODUCTS), caches));
+                    authz.requestMatchers(GET, "/orders").access(route(READ_ORDERS, via.precheckPrivilege(READ_ORDERS), caches));
+                    authz.requestMatchers(POST, "/orders").access(route(CREATE_ORDERS, via.precheckPrivilege(CREATE_ORDERS), caches));
+                    authz.requestMatchers(DELETE, "/orders/**").access(route(DELETE_ORDERS, via.checkPrivilege(DELETE_ORDERS), caches));
 
                     // Deny all other requests
                     authz.anyRequest().denyAll();
@@ -63,4 +87,21 @@ public class SecurityConfiguration {
 
         return http.build();
     }
+
+    /**
+     * Cache the result of a context-free route-level check per principal in the {@link RouteCheckCaches},
+     * unless they are disabled with a TTL of 0. Each check is recorded in the {@link AuthorizationMetrics} per privilege: the evaluated
+     * checks as decisions and all checks, including cache hits, as route checks.
+     */
+    private AuthorizationManager<RequestAuthorizationContext> route(Privilege privilege,
+            AuthorizationManager<RequestAuthorizationContext> check, RouteCheckCaches caches) {
+        AuthorizationManager<RequestAuthorizationContext> evaluated = new TimedAuthorizationManager<>(check,
+                (result, durationNanos) -> authorizationMetrics.recordDecision(privilege, result, durationNanos));
+        AuthorizationManager<RequestAuthorizationContext> cached = evaluated;
+        if (caches.isEnabled()) {
+            cached = new CachingAuthorizationManager<>(evaluated, caches.forPrivilege(privilege));
+        }
+        return new TimedAuthorizationManager<>(cached,
+                (result, durationNanos) -> authorizationMetrics.recordRouteCheck(privilege, result, durationNanos));
+    }
 }
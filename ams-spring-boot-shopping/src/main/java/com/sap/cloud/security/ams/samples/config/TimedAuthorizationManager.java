@@ -0,0 +1,52 @@
+package com.sap.cloud.security.ams.samples.config;
+
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.authorization.AuthorizationResult;
+import org.springframework.security.core.Authentication;
+
+import java.util.function.Supplier;
+
+/**
+ * Decorator that passes the duration and result of an authorization check to a {@link Recorder}, e.g. to
+ * record route-level AMS checks in the {@link AuthorizationMetrics}. Wrapped around a
+ * {@link CachingAuthorizationManager}, it records cache hits as well and shows the latency the route check
+ * adds to a request. Wrapped by one, it only records the checks that are actually evaluated.
+ *
+ * @param <T> the type of object being authorized
+ */
+public class TimedAuthorizationManager<T> implements AuthorizationManager<T> {
+    private final AuthorizationManager<T> delegate;
+    private final Recorder recorder;
+
+    /**
+     * Receives the result of each check
+     */
+    @FunctionalInterface
+    public interface Recorder {
+        /**
+         * @param result result of the check, null if the check abstained
+         */
+        void record(AuthorizationResult result, long durationNanos);
+    }
+
+    public TimedAuthorizationManager(AuthorizationManager<T> delegate, Recorder recorder) {
+        this.delegate = delegate;
+        this.recorder = recorder;
+    }
+
+    @Override
+    public AuthorizationResult authorize(Supplier<Authentication> authentication, T object) {
+        long start = System.nanoTime();
+        AuthorizationResult result = delegate.authorize(authentication, object);
+        recorder.record(result, System.nanoTime() - start);
+        return result;
+    }
+
+    // no @Override: check(..) is deprecated in favor of authorize(..) and removed in Spring Security 7
+    @Deprecated
+    public AuthorizationDecision check(Supplier<Authentication> authentication, T object) {
+        AuthorizationResult result = authorize(authentication, object);
+        return result == null ? null : new AuthorizationDecision(result.isGranted());
+    }
+}
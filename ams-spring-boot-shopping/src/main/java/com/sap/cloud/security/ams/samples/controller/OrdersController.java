@@ -27,6 +27,9 @@ import org.springframework.web.server.ResponseStatusException;
 @RequestMapping("/orders")
 public class OrdersController {
     private static final Logger LOG = LoggerFactory.getLogger(OrdersController.class);
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
 
     private final ProductsService productsService;
     private final OrdersService ordersService;
@@ -39,10 +42,31 @@ public class OrdersController {
 
     /**
      * Get all orders (with filtering based on authorization)
+     *
+     * <p>If {@code limit} or {@code cursor} is given, a single page is returned instead.
+     * The cursor is the ID of the last order of the previous page. If the page is full,
+     * the cursor for the next page is returned in the X-Next-Cursor header.
      */
     @GetMapping
-    public List<Order> getOrders() {
-        return ordersService.getOrders();
+    public ResponseEntity<List<Order>> getOrders(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) Integer cursor) {
+        if (limit == null && cursor == null) {
+            return ResponseEntity.ok(ordersService.getOrders());
+        }
+
+        int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+        int afterId = cursor != null ? cursor : 0;
+        if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE || afterId < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid limit or cursor");
+        }
+
+        List<Order> orders = ordersService.getOrders(afterId, pageSize);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (orders.size() == pageSize) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(orders.get(orders.size() - 1).getId()));
+        }
+        return response.body(orders);
     }
 
     /**
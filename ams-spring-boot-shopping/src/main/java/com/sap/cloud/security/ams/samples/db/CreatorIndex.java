@@ -0,0 +1,165 @@
+package com.sap.cloud.security.ams.samples.db;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Dictionary of the distinct {@code createdBy} values of the orders with a
+ * posting list of order IDs per value.
+ *
+ * <p>
+ * Each creator is interned once and gets an {@code int} code. The posting list
+ * of a code holds the IDs of the creator's orders in ascending order, so the
+ * orders of a set of creators can be found without looking at the orders of
+ * anybody else. Authorization filters on {@code createdBy} are evaluated once
+ * per dictionary entry via {@link #orderIds(Predicate)} instead of once per
+ * order. It is the secondary index of the {@link InMemoryOrderStore}.
+ */
+public final class CreatorIndex {
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+    private final List<String> creators = new ArrayList<>();
+    private final List<PostingList> postings = new ArrayList<>();
+
+    /**
+     * Add an order ID to the posting list of its creator
+     */
+    public void add(String createdBy, int orderId) {
+        postingList(intern(createdBy)).add(orderId);
+    }
+
+    /**
+     * Remove an order ID from the posting list of its creator
+     */
+    public void remove(String createdBy, int orderId) {
+        Integer code = codes.get(createdBy);
+        if (code != null) {
+            postingList(code).remove(orderId);
+        }
+    }
+
+    /**
+     * @return the dictionary code of the creator or -1 if no order of the creator
+     *         has been added
+     */
+    public int codeOf(String createdBy) {
+        return codes.getOrDefault(createdBy, -1);
+    }
+
+    /**
+     * Get the IDs of the orders of all creators that pass the filter
+     *
+     * @param creatorFilter evaluated once per distinct creator
+     * @return order IDs in ascending order
+     */
+    public int[] orderIds(Predicate<String> creatorFilter) {
+        List<int[]> matches = new ArrayList<>();
+        int total = 0;
+        for (int code = 0; code < dictionarySize(); code++) {
+            if (creatorFilter.test(creator(code))) {
+                int[] ids = postingList(code).toArray();
+                matches.add(ids);
+                total += ids.length;
+            }
+        }
+
+        if (matches.size() == 1) {
+            return matches.get(0);
+        }
+        int[] ids = new int[total];
+        int offset = 0;
+        for (int[] match : matches) {
+            System.arraycopy(match, 0, ids, offset, match.length);
+            offset += match.length;
+        }
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Get the IDs of the orders of a single creator
+     *
+     * @return order IDs in ascending order
+     */
+    public int[] orderIds(String createdBy) {
+        int code = codeOf(createdBy);
+        return code < 0 ? new int[0] : postingList(code).toArray();
+    }
+
+    public void clear() {
+        synchronized (creators) {
+            codes.clear();
+            creators.clear();
+            postings.clear();
+        }
+    }
+
+    private int intern(String createdBy) {
+        Integer code = codes.get(createdBy);
+        if (code != null) {
+            return code;
+        }
+        synchronized (creators) {
+            return codes.computeIfAbsent(createdBy, key -> {
+                creators.add(key);
+                postings.add(new PostingList());
+                return creators.size() - 1;
+            });
+        }
+    }
+
+    private int dictionarySize() {
+        synchronized (creators) {
+            return creators.size();
+        }
+    }
+
+    private String creator(int code) {
+        synchronized (creators) {
+            return creators.get(code);
+        }
+    }
+
+    private PostingList postingList(int code) {
+        synchronized (creators) {
+            return postings.get(code);
+        }
+    }
+
+    /**
+     * Sorted, growable list of order IDs. Orders are usually added with
+     * increasing IDs, which appends to the list.
+     */
+    private static final class PostingList {
+        private int[] ids = new int[8];
+        private int size;
+
+        synchronized void add(int orderId) {
+            int index = size == 0 || orderId > ids[size - 1] ? size : Arrays.binarySearch(ids, 0, size, orderId);
+            if (index >= 0 && index < size) {
+                return; // already present
+            }
+            if (index < 0) {
+                index = -index - 1;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            ids[index] = orderId;
+            size++;
+        }
+
+        synchronized void remove(int orderId) {
+            int index = Arrays.binarySearch(ids, 0, size, orderId);
+            if (index >= 0) {
+                System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+                size--;
+            }
+        }
+
+        synchronized int[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.sap.cloud.security.ams.samples.db;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Consumer;
+
+import com.sap.cloud.security.ams.samples.model.*;
+
+/**
+ * Binary, column-oriented dump of the products and orders of a
+ * {@link SimpleDatabase}.
+ *
+ * <p>
+ * The file is written and read through a memory-mapped buffer. Each attribute is
+ * stored as one contiguous column, so restoring a snapshot is a sequence of
+ * bulk copies instead of per-record parsing. {@code createdBy} is
+ * dictionary-encoded, as there are far fewer users than orders. Layout (big
+ * endian):
+ *
+ * <pre>
+ * magic, version, nextOrderId
+ * productCount, ids[], prices[], names[], categories[]
+ * orderCount, ids[], productIds[], quantities[], totalAmounts[]
+ * creatorCount, creators[], createdByCodes[]
+ * </pre>
+ *
+ * Strings are stored as their UTF-8 length followed by the bytes.
+ */
+public final class DatabaseSnapshot {
+    private static final int MAGIC = 0x414D5353; // "AMSS"
+    private static final int VERSION = 1;
+
+    private final List<Product> products;
+    private final int nextOrderId;
+    private final int[] orderIds;
+    private final int[] productIds;
+    private final int[] quantities;
+    private final double[] totalAmounts;
+    private final String[] creators;
+    private final int[] createdByCodes;
+
+    private DatabaseSnapshot(List<Product> products, int nextOrderId, int[] orderIds, int[] productIds,
+            int[] quantities, double[] totalAmounts, String[] creators, int[] createdByCodes) {
+        this.products = products;
+        this.nextOrderId = nextOrderId;
+        this.orderIds = orderIds;
+        this.productIds = productIds;
+        this.quantities = quantities;
+        this.totalAmounts = totalAmounts;
+        this.creators = creators;
+        this.createdByCodes = createdByCodes;
+    }
+
+    /**
+     * Capture the current products and orders into column arrays
+     */
+    static DatabaseSnapshot of(List<Product> products, OrderStore orders, int nextOrderId) {
+        int capacity = orders.size();
+        int[] ids = new int[capacity];
+        int[] productIds = new int[capacity];
+        int[] quantities = new int[capacity];
+        double[] totalAmounts = new double[capacity];
+        int[] createdByCodes = new int[capacity];
+        Map<String, Integer> codes = new LinkedHashMap<>();
+
+        int[] count = { 0 };
+        orders.forEach(order -> {
+            int i = count[0];
+            // the store may have grown since its size was read
+            if (i < ids.length) {
+                ids[i] = order.getId();
+                productIds[i] = order.getProductId();
+                quantities[i] = order.getQuantity();
+                totalAmounts[i] = order.getTotalAmount();
+                createdByCodes[i] = codes.computeIfAbsent(order.getCreatedBy(), createdBy -> codes.size());
+                count[0]++;
+            }
+        });
+
+        int n = count[0];
+        return new DatabaseSnapshot(List.copyOf(products), nextOrderId, Arrays.copyOf(ids, n),
+                Arrays.copyOf(productIds, n), Arrays.copyOf(quantities, n), Arrays.copyOf(totalAmounts, n),
+                codes.keySet().toArray(new String[0]), Arrays.copyOf(createdByCodes, n));
+    }
+
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    public int getNextOrderId() {
+        return nextOrderId;
+    }
+
+    public int getOrderCount() {
+        return orderIds.length;
+    }
+
+    /**
+     * Pass all orders of the snapshot to the action in the order they were
+     * captured, i.e. sorted by ID
+     */
+    public void forEachOrder(Consumer<? super Order> action) {
+        for (int i = 0; i < orderIds.length; i++) {
+            action.accept(new Order(orderIds[i], productIds[i], quantities[i], totalAmounts[i],
+                    creators[createdByCodes[i]]));
+        }
+    }
+
+    /**
+     * Write the snapshot to a temporary file next to {@code file} and move it into
+     * place, so a crash while writing never leaves a partial snapshot behind
+     */
+    public void write(Path file) throws IOException {
+        byte[][] names = encode(products.stream().map(Product::getName).toList());
+        byte[][] categories = encode(products.stream().map(Product::getCategory).toList());
+        byte[][] creatorBytes = encode(Arrays.asList(creators));
+
+        long size = 3L * Integer.BYTES
+                + Integer.BYTES + (long) products.size() * (Integer.BYTES + Double.BYTES)
+                + encodedSize(names) + encodedSize(categories)
+                + Integer.BYTES + (long) orderIds.length * (3 * Integer.BYTES + Double.BYTES)
+                + Integer.BYTES + encodedSize(creatorBytes) + (long) createdByCodes.length * Integer.BYTES;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot of " + size + " bytes exceeds the maximum mapped file size");
+        }
+
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(nextOrderId);
+
+            buffer.putInt(products.size());
+            products.forEach(product -> buffer.putInt(product.getId()));
+            products.forEach(product -> buffer.putDouble(product.getPrice()));
+            putStrings(buffer, names);
+            putStrings(buffer, categories);
+
+            buffer.putInt(orderIds.length);
+            buffer.asIntBuffer().put(orderIds);
+            skip(buffer, orderIds.length * Integer.BYTES);
+            buffer.asIntBuffer().put(productIds);
+            skip(buffer, productIds.length * Integer.BYTES);
+            buffer.asIntBuffer().put(quantities);
+            skip(buffer, quantities.length * Integer.BYTES);
+            buffer.asDoubleBuffer().put(totalAmounts);
+            skip(buffer, totalAmounts.length * Double.BYTES);
+
+            buffer.putInt(creatorBytes.length);
+            putStrings(buffer, creatorBytes);
+            buffer.asIntBuffer().put(createdByCodes);
+            buffer.force();
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Map a snapshot file and copy its columns into memory
+     *
+     * @throws IOException if the file cannot be read or is not a snapshot of this
+     *                     version
+     */
+    public static DatabaseSnapshot read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 3 * Integer.BYTES || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a database snapshot: " + file);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + " in " + file);
+            }
+            int nextOrderId = buffer.getInt();
+
+            int productCount = buffer.getInt();
+            int[] ids = getInts(buffer, productCount);
+            double[] prices = getDoubles(buffer, productCount);
+            String[] names = getStrings(buffer, productCount);
+            String[] categories = getStrings(buffer, productCount);
+            List<Product> products = new ArrayList<>(productCount);
+            for (int i = 0; i < productCount; i++) {
+                products.add(new Product(ids[i], names[i], prices[i], categories[i]));
+            }
+
+            int orderCount = buffer.getInt();
+            int[] orderIds = getInts(buffer, orderCount);
+            int[] productIds = getInts(buffer, orderCount);
+            int[] quantities = getInts(buffer, orderCount);
+            double[] totalAmounts = getDoubles(buffer, orderCount);
+            String[] creators = getStrings(buffer, buffer.getInt());
+            int[] createdByCodes = getInts(buffer, orderCount);
+
+            return new DatabaseSnapshot(List.copyOf(products), nextOrderId, orderIds, productIds, quantities,
+                    totalAmounts, creators, createdByCodes);
+        } catch (RuntimeException e) {
+            // BufferUnderflowException, NegativeArraySizeException etc. on truncated files
+            throw new IOException("Corrupt database snapshot: " + file, e);
+        }
+    }
+
+    private static byte[][] encode(List<String> strings) {
+        byte[][] encoded = new byte[strings.size()][];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        return encoded;
+    }
+
+    private static long encodedSize(byte[][] strings) {
+        long size = 0;
+        for (byte[] string : strings) {
+            size += Integer.BYTES + string.length;
+        }
+        return size;
+    }
+
+    private static void putStrings(MappedByteBuffer buffer, byte[][] strings) {
+        for (byte[] string : strings) {
+            buffer.putInt(string.length).put(string);
+        }
+    }
+
+    private static String[] getStrings(MappedByteBuffer buffer, int count) {
+        String[] strings = new String[count];
+        for (int i = 0; i < count; i++) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+
+    private static int[] getInts(MappedByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        skip(buffer, count * Integer.BYTES);
+        return values;
+    }
+
+    private static double[] getDoubles(MappedByteBuffer buffer, int count) {
+        double[] values = new double[count];
+        buffer.asDoubleBuffer().get(values);
+        skip(buffer, count * Double.BYTES);
+        return values;
+    }
+
+    private static void skip(MappedByteBuffer buffer, int bytes) {
+        buffer.position(buffer.position() + bytes);
+    }
+}
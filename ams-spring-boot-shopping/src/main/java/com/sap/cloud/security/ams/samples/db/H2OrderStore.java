@@ -0,0 +1,424 @@
+package com.sap.cloud.security.ams.samples.db;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+
+import com.sap.cloud.security.ams.samples.model.Order;
+
+/**
+ * {@link OrderStore} backed by an H2 database via JDBC.
+ *
+ * <p>
+ * The orders table has an index on {@code createdBy}, so conditions generated by
+ * the AMS SqlExtractor for policies like ReadOwnOrders are answered from the
+ * index instead of scanning all orders. Column names match the attribute
+ * mapping used for the SqlExtractor in the OrdersService.
+ *
+ * <p>
+ * Queries run on a few long-lived connections that each keep their prepared
+ * statements by SQL. The queries for a condition template are built once per
+ * template, so repeat conditional queries, e.g. {@code createdBy = ?} for all
+ * principals with ReadOwnOrders, neither concatenate nor parse SQL again. If all
+ * of these connections are busy, a query runs on a fresh connection from the
+ * data source instead. {@link #close()} closes the long-lived connections and,
+ * for a store from {@link #createInMemory()}, also its database.
+ *
+ * <p>
+ * Iteration reads the orders in batches by ID, each with its own query, and
+ * passes a batch to the action only after its result set is closed and the
+ * connection is returned. A slow consumer, e.g. a client that reads a streamed
+ * response slowly, therefore never holds a connection.
+ */
+public class H2OrderStore implements OrderStore, AutoCloseable {
+    private static final int FETCH_SIZE = 500;
+    private static final int BATCH_SIZE = 500;
+    private static final String SELECT_ORDERS = "SELECT id, productId, quantity, totalAmount, createdBy FROM orders";
+    private static final int CACHED_CONNECTIONS = 4;
+    private static final int STATEMENTS_PER_CONNECTION = 64;
+    private static final int MAX_CONDITION_TEMPLATES = 256;
+
+    private final DataSource dataSource;
+    // pool of a private database created by the store, disposed on close
+    private final JdbcConnectionPool ownedPool;
+    private final Queue<StatementCache> idleStatementCaches = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger statementCaches = new AtomicInteger();
+    private volatile boolean closed;
+    private final Map<String, String> whereQueries = new ConcurrentHashMap<>();
+    private final Map<String, String> whereAfterQueries = new ConcurrentHashMap<>();
+
+    /**
+     * Create a store on the given data source, which stays open when the store is
+     * closed
+     */
+    public H2OrderStore(DataSource dataSource) {
+        this(dataSource, null);
+    }
+
+    private H2OrderStore(DataSource dataSource, JdbcConnectionPool ownedPool) {
+        this.dataSource = dataSource;
+        this.ownedPool = ownedPool;
+        createSchema();
+    }
+
+    /**
+     * Create a store on a private in-memory H2 database that lives until the store
+     * is closed
+     */
+    public static H2OrderStore createInMemory() {
+        String url = "jdbc:h2:mem:orders-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        JdbcConnectionPool pool = JdbcConnectionPool.create(url, "sa", "");
+        return new H2OrderStore(pool, pool);
+    }
+
+    private void createSchema() {
+        try (Connection connection = dataSource.getConnection();
+                Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS orders ("
+                    + "id INT PRIMARY KEY, "
+                    + "productId INT NOT NULL, "
+                    + "quantity INT NOT NULL, "
+                    + "totalAmount DOUBLE PRECISION NOT NULL, "
+                    + "createdBy VARCHAR(255) NOT NULL)");
+            statement.execute("CREATE INDEX IF NOT EXISTS orders_createdBy ON orders (createdBy)");
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to create orders table", e);
+        }
+    }
+
+    @Override
+    public void put(Order order) {
+        String sql = "MERGE INTO orders (id, productId, quantity, totalAmount, createdBy) KEY (id) VALUES (?, ?, ?, ?, ?)";
+        try (Connection connection = dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setInt(1, order.getId());
+            statement.setInt(2, order.getProductId());
+            statement.setInt(3, order.getQuantity());
+            statement.setDouble(4, order.getTotalAmount());
+            statement.setString(5, order.getCreatedBy());
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to store order " + order.getId(), e);
+        }
+    }
+
+    @Override
+    public Optional<Order> remove(int orderId) {
+        Optional<Order> order = get(orderId);
+        if (order.isEmpty()) {
+            return order;
+        }
+
+        try (Connection connection = dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement("DELETE FROM orders WHERE id = ?")) {
+            statement.setInt(1, orderId);
+            // only the caller whose DELETE affected the row reports the removal
+            return statement.executeUpdate() == 1 ? order : Optional.empty();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to delete order " + orderId, e);
+        }
+    }
+
+    @Override
+    public Optional<Order> get(int orderId) {
+        return query(SELECT_ORDERS + " WHERE id = ?", List.of(orderId)).stream().findFirst();
+    }
+
+    @Override
+    public List<Order> getAll() {
+        return query(SELECT_ORDERS + " ORDER BY id", List.of());
+    }
+
+    @Override
+    public void forEach(Consumer<? super Order> action) {
+        forEachAfter(Integer.MIN_VALUE, order -> {
+            action.accept(order);
+            return true;
+        });
+    }
+
+    @Override
+    public void forEachAfter(int afterId, Predicate<? super Order> action) {
+        forEachBatch(afterId, lastId -> query(SELECT_ORDERS + " WHERE id > ? ORDER BY id LIMIT ?",
+                List.of(lastId, BATCH_SIZE)), action);
+    }
+
+    @Override
+    public List<Order> getByCreator(String createdBy) {
+        return query(SELECT_ORDERS + " WHERE createdBy = ? ORDER BY id", List.of(createdBy));
+    }
+
+    @Override
+    public int size() {
+        try (Connection connection = dataSource.getConnection();
+                Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM orders")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to count orders", e);
+        }
+    }
+
+    @Override
+    public void clear() {
+        try (Connection connection = dataSource.getConnection();
+                Statement statement = connection.createStatement()) {
+            statement.executeUpdate("DELETE FROM orders");
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to clear orders", e);
+        }
+    }
+
+    @Override
+    public boolean supportsSqlConditions() {
+        return true;
+    }
+
+    @Override
+    public List<Order> getWhere(String sqlCondition, List<?> parameters) {
+        return query(whereQuery(sqlCondition), parameters);
+    }
+
+    @Override
+    public void forEachWhere(String sqlCondition, List<?> parameters, Consumer<? super Order> action) {
+        forEachBatch(Integer.MIN_VALUE, lastId -> getWhereAfter(sqlCondition, parameters, lastId, BATCH_SIZE),
+                order -> {
+                    action.accept(order);
+                    return true;
+                });
+    }
+
+    @Override
+    public List<Order> getWhereAfter(String sqlCondition, List<?> parameters, int afterId, int limit) {
+        List<Object> pageParameters = new ArrayList<>(parameters.size() + 2);
+        pageParameters.add(afterId);
+        pageParameters.addAll(parameters);
+        pageParameters.add(limit);
+        String sql = queryFor(whereAfterQueries, sqlCondition,
+                // the primary key index serves both the cursor and the sort order
+                condition -> SELECT_ORDERS + " WHERE id > ? AND (" + condition + ") ORDER BY id LIMIT ?");
+        return query(sql, pageParameters);
+    }
+
+    /**
+     * Pass the orders of consecutive batches to the action until a batch is empty
+     * or the action returns false. The batches are read before the action is
+     * called, so no connection is held while the action runs.
+     *
+     * @param readBatch reads the next batch of orders with an ID greater than the
+     *                  given one in ID order
+     */
+    private static void forEachBatch(int afterId, IntFunction<List<Order>> readBatch,
+            Predicate<? super Order> action) {
+        int lastId = afterId;
+        while (true) {
+            List<Order> batch = readBatch.apply(lastId);
+            for (Order order : batch) {
+                if (!action.test(order)) {
+                    return;
+                }
+            }
+            if (batch.size() < BATCH_SIZE) {
+                return;
+            }
+            lastId = batch.get(batch.size() - 1).getId();
+        }
+    }
+
+    private String whereQuery(String sqlCondition) {
+        return queryFor(whereQueries, sqlCondition, condition -> SELECT_ORDERS + " WHERE " + condition + " ORDER BY id");
+    }
+
+    /**
+     * Get the query for a condition template, built once per template
+     */
+    private static String queryFor(Map<String, String> queries, String sqlCondition,
+            Function<String, String> buildQuery) {
+        String sql = queries.get(sqlCondition);
+        if (sql == null) {
+            if (queries.size() >= MAX_CONDITION_TEMPLATES) {
+                queries.clear();
+            }
+            sql = queries.computeIfAbsent(sqlCondition, buildQuery);
+        }
+        return sql;
+    }
+
+    private List<Order> query(String sql, List<?> parameters) {
+        List<Order> orders = new ArrayList<>();
+        query(sql, parameters, orders::add);
+        return orders;
+    }
+
+    /**
+     * Run a query and pass each order to the action while reading the result set.
+     * The action runs while the connection is in use, so it must not block.
+     */
+    private void query(String sql, List<?> parameters, Consumer<? super Order> action) {
+        StatementCache statementCache = borrowStatementCache();
+        if (statementCache == null) {
+            try (Connection connection = dataSource.getConnection();
+                    PreparedStatement statement = connection.prepareStatement(sql)) {
+                query(statement, parameters, action);
+            } catch (SQLException e) {
+                throw new IllegalStateException("Failed to query orders: " + sql, e);
+            }
+            return;
+        }
+
+        try {
+            query(statementCache.prepare(sql), parameters, action);
+        } catch (SQLException e) {
+            // the connection may be broken, do not reuse it
+            discard(statementCache);
+            statementCache = null;
+            throw new IllegalStateException("Failed to query orders: " + sql, e);
+        } finally {
+            if (statementCache != null) {
+                release(statementCache);
+            }
+        }
+    }
+
+    private static void query(PreparedStatement statement, List<?> parameters, Consumer<? super Order> action)
+            throws SQLException {
+        statement.clearParameters();
+        for (int i = 0; i < parameters.size(); i++) {
+            statement.setObject(i + 1, parameters.get(i));
+        }
+        statement.setFetchSize(FETCH_SIZE);
+
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                action.accept(new Order(
+                        resultSet.getInt(1),
+                        resultSet.getInt(2),
+                        resultSet.getInt(3),
+                        resultSet.getDouble(4),
+                        resultSet.getString(5)));
+            }
+        }
+    }
+
+    /**
+     * @return an idle connection with its statements, or null if the maximum
+     *         number of cached connections is in use
+     */
+    private StatementCache borrowStatementCache() {
+        if (closed) {
+            return null;
+        }
+        StatementCache statementCache = idleStatementCaches.poll();
+        if (statementCache != null) {
+            return statementCache;
+        }
+        if (statementCaches.incrementAndGet() > CACHED_CONNECTIONS) {
+            statementCaches.decrementAndGet();
+            return null;
+        }
+        try {
+            return new StatementCache(dataSource.getConnection());
+        } catch (SQLException e) {
+            statementCaches.decrementAndGet();
+            return null;
+        }
+    }
+
+    private void release(StatementCache statementCache) {
+        idleStatementCaches.offer(statementCache);
+        // a query that was running during close() returns its connection afterwards
+        if (closed) {
+            closeIdleStatementCaches();
+        }
+    }
+
+    private void closeIdleStatementCaches() {
+        StatementCache statementCache;
+        while ((statementCache = idleStatementCaches.poll()) != null) {
+            discard(statementCache);
+        }
+    }
+
+    /**
+     * Close the long-lived connections with their prepared statements. Queries
+     * that are still running close their connection when they complete, later
+     * queries use a fresh connection from the data source.
+     *
+     * <p>
+     * A store from {@link #createInMemory()} also shuts down its database and
+     * disposes the connection pool, so later queries fail.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        closeIdleStatementCaches();
+        if (ownedPool == null) {
+            return;
+        }
+
+        // the database outlives its connections because of DB_CLOSE_DELAY=-1
+        try (Connection connection = ownedPool.getConnection();
+                Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        } catch (SQLException e) {
+            // already shut down
+        } finally {
+            ownedPool.dispose();
+        }
+    }
+
+    private void discard(StatementCache statementCache) {
+        statementCaches.decrementAndGet();
+        try {
+            statementCache.connection.close();
+        } catch (SQLException e) {
+            // already broken
+        }
+    }
+
+    /**
+     * Connection with its prepared statements, least recently used first. Used by
+     * one query at a time.
+     */
+    private static final class StatementCache {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= STATEMENTS_PER_CONNECTION) {
+                    return false;
+                }
+                try {
+                    eldest.getValue().close();
+                } catch (SQLException e) {
+                    // the statement is dropped anyway
+                }
+                return true;
+            }
+        };
+
+        StatementCache(Connection connection) {
+            this.connection = connection;
+        }
+
+        PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement == null) {
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+            }
+            return statement;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.sap.cloud.security.ams.samples.db;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.sap.cloud.security.ams.samples.model.Order;
+
+/**
+ * Concurrent in-memory {@link OrderStore}.
+ *
+ * <p>
+ * Orders are kept in a hash-based primary index by ID and a {@link CreatorIndex}
+ * with a sorted posting list of order IDs per {@code createdBy}, so lookups by ID
+ * or creator do not need to scan all orders.
+ * For iteration in ID order, the IDs are also kept in an array that is sorted on
+ * demand: new orders usually have the highest ID and are appended, so the array
+ * only needs sorting after out-of-order inserts such as a parallel initial load.
+ * Reads of single orders are lock-free. Writes to the same order ID are serialized via a fixed
+ * set of lock stripes, which keeps both indexes consistent for that order
+ * without a global lock.
+ */
+public class InMemoryOrderStore implements OrderStore {
+    private static final int LOCK_STRIPES = 64;
+
+    private final Map<Integer, Order> ordersById = new ConcurrentHashMap<>();
+    private final OrderIds orderIds = new OrderIds();
+    private final CreatorIndex creators = new CreatorIndex();
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    public InMemoryOrderStore() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public void put(Order order) {
+        ReentrantLock lock = lockFor(order.getId());
+        lock.lock();
+        try {
+            Order previous = ordersById.put(order.getId(), order);
+            if (previous != null) {
+                // a replaced order must not stay in the posting list of its old creator
+                creators.remove(previous.getCreatedBy(), previous.getId());
+            } else {
+                orderIds.add(order.getId());
+            }
+            creators.add(order.getCreatedBy(), order.getId());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<Order> remove(int orderId) {
+        ReentrantLock lock = lockFor(orderId);
+        lock.lock();
+        try {
+            Order removed = ordersById.remove(orderId);
+            if (removed != null) {
+                creators.remove(removed.getCreatedBy(), orderId);
+                orderIds.removed();
+            }
+            return Optional.ofNullable(removed);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<Order> get(int orderId) {
+        return Optional.ofNullable(ordersById.get(orderId));
+    }
+
+    @Override
+    public List<Order> getAll() {
+        List<Order> orders = new ArrayList<>(ordersById.size());
+        forEach(orders::add);
+        return orders;
+    }
+
+    @Override
+    public void forEach(Consumer<? super Order> action) {
+        forEachAfter(Integer.MIN_VALUE, order -> {
+            action.accept(order);
+            return true;
+        });
+    }
+
+    @Override
+    public void forEachAfter(int afterId, Predicate<? super Order> action) {
+        OrderIds.Sorted sorted = orderIds.sorted(ordersById);
+        int start = Arrays.binarySearch(sorted.ids(), 0, sorted.size(), afterId);
+        start = start >= 0 ? start + 1 : -start - 1;
+        for (int i = start; i < sorted.size(); i++) {
+            // skip orders that have been removed since the IDs were sorted
+            Order order = ordersById.get(sorted.ids()[i]);
+            if (order != null && !action.test(order)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public List<Order> getByCreator(String createdBy) {
+        int[] orderIds = creators.orderIds(createdBy);
+        List<Order> orders = new ArrayList<>(orderIds.length);
+        for (int orderId : orderIds) {
+            // the order may have been removed concurrently since the ID was read
+            Order order = ordersById.get(orderId);
+            if (order != null) {
+                orders.add(order);
+            }
+        }
+        return orders;
+    }
+
+    @Override
+    public int[] getIdsByCreator(String createdBy) {
+        return creators.orderIds(createdBy);
+    }
+
+    @Override
+    public int[] getIdsByCreators(Predicate<String> creatorFilter) {
+        return creators.orderIds(creatorFilter);
+    }
+
+    @Override
+    public int size() {
+        return ordersById.size();
+    }
+
+    /**
+     * Remove all orders while holding every lock stripe
+     */
+    @Override
+    public void clear() {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+        try {
+            ordersById.clear();
+            orderIds.clear();
+            creators.clear();
+        } finally {
+            for (ReentrantLock lock : locks) {
+                lock.unlock();
+            }
+        }
+    }
+
+    private ReentrantLock lockFor(int orderId) {
+        return locks[Math.floorMod(orderId, LOCK_STRIPES)];
+    }
+
+    /**
+     * IDs of the stored orders, sorted on demand. IDs that are added in ascending
+     * order are appended and keep the array sorted. IDs of removed orders stay in
+     * the array until it is sorted again or until they make up half of it.
+     * Sorting and compaction write a new array, so iterations over a previous
+     * {@link Sorted} view are not affected.
+     */
+    private static final class OrderIds {
+        private int[] ids = new int[1024];
+        private int size;
+        private int removed;
+        private boolean sorted = true;
+
+        record Sorted(int[] ids, int size) {
+        }
+
+        synchronized void add(int orderId) {
+            if (size > 0 && orderId <= ids[size - 1]) {
+                sorted = false;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = orderId;
+        }
+
+        synchronized void removed() {
+            removed++;
+        }
+
+        /**
+         * @param ordersById primary index, used to drop the IDs of removed orders
+         * @return the IDs in ascending order without duplicates; later appends do
+         *         not change the range of the view
+         */
+        synchronized Sorted sorted(Map<Integer, Order> ordersById) {
+            if (!sorted || removed * 2 > size) {
+                int[] live = Arrays.copyOf(ids, Math.max(size, 16));
+                Arrays.sort(live, 0, size);
+                int liveSize = 0;
+                for (int i = 0; i < size; i++) {
+                    int orderId = live[i];
+                    // duplicates come from orders that were removed and added again
+                    if ((liveSize == 0 || orderId != live[liveSize - 1]) && ordersById.containsKey(orderId)) {
+                        live[liveSize++] = orderId;
+                    }
+                }
+                ids = live;
+                size = liveSize;
+                removed = 0;
+                sorted = true;
+            }
+            return new Sorted(ids, size);
+        }
+
+        synchronized void clear() {
+            ids = new int[1024];
+            size = 0;
+            removed = 0;
+            sorted = true;
+        }
+    }
+}
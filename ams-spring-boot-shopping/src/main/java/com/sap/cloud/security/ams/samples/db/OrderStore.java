@@ -0,0 +1,130 @@
+package com.sap.cloud.security.ams.samples.db;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import com.sap.cloud.security.ams.samples.model.Order;
+
+/**
+ * Storage engine for the orders of the {@link SimpleDatabase}
+ */
+public interface OrderStore {
+
+    /**
+     * Insert or replace an order
+     */
+    void put(Order order);
+
+    /**
+     * Remove an order
+     *
+     * @return the removed order or empty if no order with this ID exists
+     */
+    Optional<Order> remove(int orderId);
+
+    Optional<Order> get(int orderId);
+
+    /**
+     * Get all orders sorted by ID
+     */
+    List<Order> getAll();
+
+    /**
+     * Pass all orders sorted by ID to the action without collecting them first.
+     * Orders that are added or removed concurrently may or may not be included.
+     */
+    default void forEach(Consumer<? super Order> action) {
+        getAll().forEach(action);
+    }
+
+    /**
+     * Pass the orders with an ID greater than {@code afterId} to the action in ID
+     * order until the action returns false. Used to fill pages without scanning
+     * beyond the last order of a page.
+     */
+    default void forEachAfter(int afterId, Predicate<? super Order> action) {
+        for (Order order : getAll()) {
+            if (order.getId() > afterId && !action.test(order)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Get the orders of a creator sorted by ID
+     */
+    List<Order> getByCreator(String createdBy);
+
+    /**
+     * Get the IDs of the orders of a creator
+     *
+     * @return order IDs in ascending order
+     */
+    default int[] getIdsByCreator(String createdBy) {
+        return getByCreator(createdBy).stream().mapToInt(Order::getId).toArray();
+    }
+
+    /**
+     * Get the IDs of the orders whose creator passes the filter, e.g. an
+     * authorization filter on {@code createdBy}. The filter is evaluated once per
+     * distinct creator.
+     *
+     * @return order IDs in ascending order
+     */
+    default int[] getIdsByCreators(Predicate<String> creatorFilter) {
+        Map<String, Boolean> granted = new HashMap<>();
+        List<Integer> ids = new ArrayList<>();
+        forEach(order -> {
+            if (granted.computeIfAbsent(order.getCreatedBy(), creatorFilter::test)) {
+                ids.add(order.getId());
+            }
+        });
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    int size();
+
+    void clear();
+
+    /**
+     * Whether this store can evaluate SQL conditions via {@link #getWhere(String, List)}
+     */
+    default boolean supportsSqlConditions() {
+        return false;
+    }
+
+    /**
+     * Get the orders matching an SQL WHERE condition sorted by ID
+     *
+     * @param sqlCondition WHERE condition template with {@code ?} placeholders, e.g. as
+     *                     generated by the AMS SqlExtractor
+     * @param parameters   values for the placeholders in the order of their occurrence
+     * @throws UnsupportedOperationException if {@link #supportsSqlConditions()} is false
+     */
+    default List<Order> getWhere(String sqlCondition, List<?> parameters) {
+        throw new UnsupportedOperationException("SQL conditions are not supported by " + getClass().getSimpleName());
+    }
+
+    /**
+     * Pass the orders matching an SQL WHERE condition sorted by ID to the action
+     * without collecting them first
+     *
+     * @throws UnsupportedOperationException if {@link #supportsSqlConditions()} is false
+     * @see #getWhere(String, List)
+     */
+    default void forEachWhere(String sqlCondition, List<?> parameters, Consumer<? super Order> action) {
+        getWhere(sqlCondition, parameters).forEach(action);
+    }
+
+    /**
+     * Get at most {@code limit} orders with an ID greater than {@code afterId} that
+     * match an SQL WHERE condition, sorted by ID
+     *
+     * @throws UnsupportedOperationException if {@link #supportsSqlConditions()} is false
+     * @see #getWhere(String, List)
+     */
+    default List<Order> getWhereAfter(String sqlCondition, List<?> parameters, int afterId, int limit) {
+        throw new UnsupportedOperationException("SQL conditions are not supported by " + getClass().getSimpleName());
+    }
+}
@@ -0,0 +1,180 @@
+package com.sap.cloud.security.ams.samples.db;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.zip.CRC32;
+
+import org.slf4j.*;
+
+import com.sap.cloud.security.ams.samples.model.Order;
+
+/**
+ * Append-only log of the order changes since the last {@link DatabaseSnapshot}.
+ *
+ * <p>
+ * Each record is framed by its length and a CRC32 checksum. Records are written
+ * to the file without forcing them to the device, so they survive a crash of
+ * the process but the last records may be lost on a power failure. A record
+ * that was only partially written is detected on {@link #replay(Listener)},
+ * and the log is truncated after the last complete record.
+ */
+public final class WriteAheadLog implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    private static final byte ADD_ORDER = 1;
+    private static final byte DELETE_ORDER = 2;
+    private static final int MAX_RECORD_SIZE = 64 * 1024;
+
+    /**
+     * Receives the changes of the log in the order they were appended
+     */
+    public interface Listener {
+        void orderAdded(Order order);
+
+        void orderDeleted(int orderId);
+    }
+
+    private final Path file;
+    private final FileChannel channel;
+
+    private WriteAheadLog(Path file, FileChannel channel) {
+        this.file = file;
+        this.channel = channel;
+    }
+
+    public static WriteAheadLog open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return new WriteAheadLog(file, channel);
+    }
+
+    public void appendAdd(Order order) {
+        byte[] createdBy = order.getCreatedBy().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(1 + 3 * Integer.BYTES + Double.BYTES + Integer.BYTES
+                + createdBy.length);
+        payload.put(ADD_ORDER)
+                .putInt(order.getId())
+                .putInt(order.getProductId())
+                .putInt(order.getQuantity())
+                .putDouble(order.getTotalAmount())
+                .putInt(createdBy.length)
+                .put(createdBy);
+        append(payload);
+    }
+
+    public void appendDelete(int orderId) {
+        append(ByteBuffer.allocate(1 + Integer.BYTES).put(DELETE_ORDER).putInt(orderId));
+    }
+
+    private void append(ByteBuffer payload) {
+        payload.flip();
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + payload.remaining() + Integer.BYTES);
+        record.putInt(payload.remaining()).put(payload).putInt((int) crc.getValue()).flip();
+        synchronized (channel) {
+            try {
+                while (record.hasRemaining()) {
+                    channel.write(record);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to append to " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Pass all complete records to the listener and cut off a torn record at the
+     * end of the log
+     *
+     * @return number of replayed records
+     */
+    public int replay(Listener listener) throws IOException {
+        synchronized (channel) {
+            long validEnd = 0;
+            int count = 0;
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+                while (true) {
+                    int length;
+                    try {
+                        length = in.readInt();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    if (length <= 0 || length > MAX_RECORD_SIZE) {
+                        logger.warn("Invalid record length {} at offset {} of {}", length, validEnd, file);
+                        break;
+                    }
+
+                    byte[] payload = new byte[length];
+                    int checksum;
+                    try {
+                        in.readFully(payload);
+                        checksum = in.readInt();
+                    } catch (EOFException e) {
+                        logger.warn("Incomplete record at offset {} of {}", validEnd, file);
+                        break;
+                    }
+                    CRC32 crc = new CRC32();
+                    crc.update(payload);
+                    if ((int) crc.getValue() != checksum) {
+                        logger.warn("Checksum mismatch at offset {} of {}", validEnd, file);
+                        break;
+                    }
+
+                    apply(ByteBuffer.wrap(payload), listener);
+                    validEnd += Integer.BYTES + length + Integer.BYTES;
+                    count++;
+                }
+            }
+
+            if (validEnd < channel.size()) {
+                channel.truncate(validEnd);
+            }
+            channel.position(validEnd);
+            return count;
+        }
+    }
+
+    private static void apply(ByteBuffer payload, Listener listener) {
+        byte type = payload.get();
+        switch (type) {
+            case ADD_ORDER:
+                int id = payload.getInt();
+                int productId = payload.getInt();
+                int quantity = payload.getInt();
+                double totalAmount = payload.getDouble();
+                byte[] createdBy = new byte[payload.getInt()];
+                payload.get(createdBy);
+                listener.orderAdded(new Order(id, productId, quantity, totalAmount,
+                        new String(createdBy, StandardCharsets.UTF_8)));
+                break;
+            case DELETE_ORDER:
+                listener.orderDeleted(payload.getInt());
+                break;
+            default:
+                throw new IllegalStateException("Unknown record type " + type);
+        }
+    }
+
+    /**
+     * Discard all records, e.g. after they have been captured in a snapshot
+     */
+    public void truncate() throws IOException {
+        synchronized (channel) {
+            channel.truncate(0);
+            channel.position(0);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
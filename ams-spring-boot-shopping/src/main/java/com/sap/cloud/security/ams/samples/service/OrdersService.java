@@ -4,9 +4,10 @@ import static com.sap.cloud.security.ams.samples.config.AmsAttributes.*;
 import static com.sap.cloud.security.ams.samples.config.Privileges.*;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 import com.sap.cloud.security.ams.api.expression.AttributeName;
+import com.sap.cloud.security.ams.samples.config.AuthorizationMetrics;
+import com.sap.cloud.security.ams.samples.config.OrderPredicates;
 import com.sap.cloud.security.ams.samples.db.SimpleDatabase;
 import com.sap.cloud.security.ams.samples.model.*;
 import com.sap.cloud.security.ams.spring.annotations.AmsAttribute;
@@ -30,21 +31,24 @@ import org.springframework.web.server.ResponseStatusException;
 @Service
 public class OrdersService {
     private static final Logger LOG = LoggerFactory.getLogger(OrdersService.class);
+    private static final String CREATED_BY_COLUMN = "createdBy";
 
     private final SimpleDatabase database;
     private final Authorizations authorizations;
+    private final AuthorizationMetrics metrics;
     private SqlExtractor extractGetOrdersSql;
 
     @Autowired
-    public OrdersService(SimpleDatabase database, Authorizations authorizations) {
+    public OrdersService(SimpleDatabase database, Authorizations authorizations, AuthorizationMetrics metrics) {
         this.database = database;
         this.authorizations = authorizations;
+        this.metrics = metrics;
         this.initSqlExtractors();
     }
 
     private void initSqlExtractors() {
         Map<AttributeName, String> attributeMapping = Map.of(
-                AttributeName.ofSegments("order", "createdBy"), "createdBy");
+                AttributeName.ofSegments("order", "createdBy"), CREATED_BY_COLUMN);
         extractGetOrdersSql = new SqlExtractor(attributeMapping);
     }
 
@@ -172,11 +176,11 @@ public class OrdersService {
          * *
          * For conditional cases consider converting the Decision to an SQL prepared
          * statement fragment
-         * (recommended) or perform loop-based per-entity checks as shown below for
-         * small datasets.
+         * (recommended) or filter in memory with a predicate compiled from the
+         * decision as shown below.
          */
 
-        Decision decision = authorizations.checkPrivilege(READ_ORDERS);
+        Decision decision = checkReadOrders();
 
         List<Order> orders;
         if (decision.isDenied()) {
@@ -191,18 +195,83 @@ public class OrdersService {
             LOG.debug("Conditional authorization - filtering orders based on policy conditions");
 
             // Showcases SQL extraction for database-level filtering (recommended)
-            SqlResult sqlResult = decision.visit(extractGetOrdersSql);
-            LOG.info("SQL Filter for conditional access: {} with parameters {}", sqlResult.getSqlTemplate(),
-                    sqlResult.getParameters());
-
-            // Alternative loop-based filtering by checking each order individually (for small resources sets only)
-            orders = database.getOrders().stream()
-                    .filter(order -> authorizations
-                            .checkPrivilege(READ_ORDERS, Map.of(ORDER_CREATED_BY, order.getCreatedBy())).isGranted())
-                    .collect(Collectors.toList());
+            SqlResult sqlCondition = decision.visit(extractGetOrdersSql);
+            LOG.info("SQL Filter for conditional access: {} with parameters {}", sqlCondition.getSqlTemplate(),
+                    sqlCondition.getParameters());
+
+            long start = System.nanoTime();
+            if (database.supportsSqlConditions()) {
+                // Database-level filtering with the extracted SQL condition
+                orders = database.getOrdersWhere(sqlCondition.getSqlTemplate(), sqlCondition.getParameters());
+                metrics.recordFilter("sql", 0, System.nanoTime() - start);
+            } else {
+                // Alternative in-memory filtering with a predicate compiled once from the decision (for in-memory resource sets).
+                // The predicate is evaluated once per distinct creator and only the orders of granted creators are read.
+                // If only the orders of one creator are granted, e.g. by ReadOwnOrders, they are read from that creator's posting list.
+                Optional<String> creator = OrderPredicates.singleCreator(decision, sqlCondition.getParameters());
+                if (creator.isPresent()) {
+                    orders = database.getOrdersByCreator(creator.get());
+                    metrics.recordFilter("dictionary", 0, System.nanoTime() - start);
+                } else {
+                    OrderPredicates.CreatorFilter isReadableCreator = OrderPredicates.compileCreatorFilter(decision);
+                    orders = database.getOrdersByCreators(isReadableCreator);
+                    metrics.recordFilter("dictionary", isReadableCreator.evaluations(), System.nanoTime() - start);
+                }
+            }
             LOG.info("Returned {} filtered orders (conditional access)", orders.size());
         }
 
         return orders;
     }
+
+    /**
+     * Get a page of the orders visible to the user, resuming after the order with ID
+     * {@code afterId}
+     *
+     * <p>
+     * The page is filled after authorization filtering, so it only contains orders
+     * the user may read and is full unless no more readable orders follow.
+     */
+    @PrecheckPrivilege(action = "read", resource = "orders")
+    public List<Order> getOrders(int afterId, int limit) {
+        Decision decision = checkReadOrders();
+
+        List<Order> orders;
+        if (decision.isDenied()) {
+            LOG.warn("Authorization denied for reading orders");
+            throw new AccessDeniedException(null);
+        } else if (decision.isGranted()) {
+            orders = database.getOrdersAfter(afterId, limit, order -> true);
+        } else {
+            SqlResult sqlCondition = decision.visit(extractGetOrdersSql);
+            long start = System.nanoTime();
+            if (database.supportsSqlConditions()) {
+                orders = database.getOrdersWhereAfter(sqlCondition.getSqlTemplate(), sqlCondition.getParameters(),
+                        afterId, limit);
+                metrics.recordFilter("sql", 0, System.nanoTime() - start);
+            } else {
+                Optional<String> creator = OrderPredicates.singleCreator(decision, sqlCondition.getParameters());
+                if (creator.isPresent()) {
+                    orders = database.getOrdersByCreatorAfter(creator.get(), afterId, limit);
+                    metrics.recordFilter("dictionary", 0, System.nanoTime() - start);
+                } else {
+                    // The orders after the cursor are filtered in batches with the bulk OrderPredicates#filterOrders
+                    // until the page is full, with one evaluation per distinct creator of a batch.
+                    OrderPredicates.CreatorFilter isReadableCreator = OrderPredicates.compileCreatorFilter(decision);
+                    orders = database.getOrdersAfterInBatches(afterId, limit, isReadableCreator::filterOrders);
+                    metrics.recordFilter("bitset", isReadableCreator.evaluations(), System.nanoTime() - start);
+                }
+            }
+        }
+
+        LOG.info("Returned page of {} orders after order {}", orders.size(), afterId);
+        return orders;
+    }
+
+    private Decision checkReadOrders() {
+        long start = System.nanoTime();
+        Decision decision = authorizations.checkPrivilege(READ_ORDERS);
+        metrics.recordDecision(READ_ORDERS, decision, System.nanoTime() - start);
+        return decision;
+    }
 }
@@ -1,6 +1,7 @@
 package com.sap.cloud.security.ams.samples;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -13,12 +14,18 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.*;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.sap.cloud.security.ams.samples.config.AuthorizationMetrics;
 import com.sap.cloud.security.ams.samples.config.TestSecurityConfiguration;
 import com.sap.cloud.security.ams.samples.db.SimpleDatabase;
 import com.sap.cloud.security.ams.samples.model.Order;
 import com.sap.cloud.security.ams.api.Privilege;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
@@ -47,6 +54,9 @@ class ApplicationTest {
     @Autowired
     private SimpleDatabase database;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @BeforeAll
     static void setUpAll(@Autowired WebApplicationContext wac) {
         // @AutoConfigureMockMvc is not backward-compatible from Spring Boot 3 to 4 but this is
@@ -79,6 +89,58 @@ class ApplicationTest {
                 .andExpect(jsonPath("$.status").value("UP"));
     }
 
+    // Metrics endpoint tests
+    @Test
+    void testPrometheusEndpointRequiresAuthentication() throws Exception {
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void testRouteChecksAndDecisionsAreRecordedPerPrivilege() throws Exception {
+        String aliceJwt = getAliceJwt();
+        long routeChecks = count(AuthorizationMetrics.ROUTE_CHECKS, "read:products");
+
+        mockMvc.perform(get("/products").header("Authorization", "Bearer " + aliceJwt))
+                .andExpect(status().isOk());
+        long decisions = count(AuthorizationMetrics.DECISIONS, "read:products");
+        mockMvc.perform(get("/products").header("Authorization", "Bearer " + aliceJwt))
+                .andExpect(status().isOk());
+
+        // every route check is timed, the route cache answers the repeated check without a new decision
+        assertEquals(routeChecks + 2, count(AuthorizationMetrics.ROUTE_CHECKS, "read:products"));
+        assertTrue(decisions >= 1);
+        assertEquals(decisions, count(AuthorizationMetrics.DECISIONS, "read:products"));
+
+        String metrics = mockMvc.perform(get("/actuator/prometheus").header("Authorization", "Bearer " + aliceJwt))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        assertTrue(metrics.contains(
+                "ams_authorization_decisions_seconds_count{outcome=\"granted\",privilege=\"read:products\"}"));
+    }
+
+    @Test
+    void testRouteChecksAreEvaluatedAgainAfterInvalidation() throws Exception {
+        String aliceJwt = getAliceJwt();
+        mockMvc.perform(get("/products").header("Authorization", "Bearer " + aliceJwt))
+                .andExpect(status().isOk());
+        long decisions = count(AuthorizationMetrics.DECISIONS, "read:products");
+
+        mockMvc.perform(delete("/actuator/routechecks").header("Authorization", "Bearer " + aliceJwt))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(get("/products").header("Authorization", "Bearer " + aliceJwt))
+                .andExpect(status().isOk());
+
+        assertEquals(decisions + 1, count(AuthorizationMetrics.DECISIONS, "read:products"));
+    }
+
+    private long count(String timerName, String privilege) {
+        Timer timer = meterRegistry.find(timerName).tag("privilege", privilege).tag("outcome", "granted").timer();
+        return timer == null ? 0 : timer.count();
+    }
+
     // GET /privileges test
     @Test
     void testPrivilegesEndpoint() throws Exception {
@@ -242,6 +304,67 @@ class ApplicationTest {
                 .andExpect(status().isForbidden());
     }
 
+    @Test
+    void testGetOrdersPaginated() throws Exception {
+        String aliceJwt = getAliceJwt();
+        String firstPage = mockMvc.perform(get("/orders?limit=3")
+                .header("Authorization", "Bearer " + aliceJwt))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "3"))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        String lastPage = mockMvc.perform(get("/orders?limit=3&cursor=3")
+                .header("Authorization", "Bearer " + aliceJwt))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-Cursor"))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        List<Order> first = objectMapper.readValue(firstPage, new TypeReference<List<Order>>() {
+        });
+        List<Order> last = objectMapper.readValue(lastPage, new TypeReference<List<Order>>() {
+        });
+        assertEquals(List.of(1, 2, 3), first.stream().map(Order::getId).toList());
+        assertEquals(List.of(4), last.stream().map(Order::getId).toList());
+    }
+
+    @Test
+    void testGetOrdersPageFilledAfterFiltering() throws Exception {
+        String bobJwt = getBobJwt();
+        String response = mockMvc.perform(get("/orders?limit=1")
+                .header("Authorization", "Bearer " + bobJwt))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        List<Order> orders = objectMapper.readValue(response, new TypeReference<List<Order>>() {
+        });
+        // the orders of other users before bob's first order must not leave the page empty
+        assertEquals(1, orders.size());
+        assertEquals("bob", orders.get(0).getCreatedBy());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "limit=0", "limit=-1", "limit=1001", "cursor=-1", "limit=abc" })
+    void testGetOrdersRejectsPageOutOfBounds(String query) throws Exception {
+        String aliceJwt = getAliceJwt();
+        mockMvc.perform(get("/orders?" + query)
+                .header("Authorization", "Bearer " + aliceJwt))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testGetOrdersAcceptsMaxPageSize() throws Exception {
+        String aliceJwt = getAliceJwt();
+        mockMvc.perform(get("/orders?limit=1000")
+                .header("Authorization", "Bearer " + aliceJwt))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-Cursor"));
+    }
+
     // JWT Helper Methods
     private String loadJwtFromFile(String filename) throws IOException {
         Path filePath = Path.of("src/test/resources/jwt", filename);
@@ -0,0 +1,89 @@
+package com.sap.cloud.security.ams.samples.config;
+
+import static com.sap.cloud.security.ams.samples.config.AuthorizationMetrics.*;
+import static com.sap.cloud.security.ams.samples.config.Privileges.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.concurrent.TimeUnit;
+
+import com.sap.cloud.security.ams.api.Decision;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.*;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+
+class AuthorizationMetricsTest {
+
+    private SimpleMeterRegistry registry;
+    private AuthorizationMetrics cut;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        cut = new AuthorizationMetrics(registry);
+    }
+
+    @Test
+    void testDecisionsAreTimedPerPrivilegeAndOutcome() {
+        Decision conditional = mock(Decision.class);
+        Decision denied = mock(Decision.class);
+        when(denied.isDenied()).thenReturn(true);
+
+        cut.recordDecision(READ_ORDERS, conditional, 1_000);
+        cut.recordDecision(READ_ORDERS, conditional, 3_000);
+        cut.recordDecision(READ_ORDERS, denied, 1_000);
+
+        Timer readOrders = registry.get(DECISIONS)
+                .tag("privilege", "read:orders").tag("outcome", "conditional").timer();
+        assertEquals(2, readOrders.count());
+        assertEquals(4_000, readOrders.totalTime(TimeUnit.NANOSECONDS));
+        assertEquals(1, registry.get(DECISIONS)
+                .tag("privilege", "read:orders").tag("outcome", "denied").timer().count());
+        assertEquals(2, registry.get(DECISIONS).timers().size());
+    }
+
+    @Test
+    void testRouteChecksAreTimedPerPrivilegeAndOutcome() {
+        cut.recordRouteCheck(DELETE_ORDERS, new AuthorizationDecision(true), 1_000);
+        cut.recordRouteCheck(DELETE_ORDERS, new AuthorizationDecision(false), 1_000);
+        cut.recordRouteCheck(DELETE_ORDERS, null, 1_000);
+
+        assertEquals(1, registry.get(ROUTE_CHECKS)
+                .tag("privilege", "delete:orders").tag("outcome", "granted").timer().count());
+        assertEquals(1, registry.get(ROUTE_CHECKS)
+                .tag("privilege", "delete:orders").tag("outcome", "denied").timer().count());
+        assertEquals(1, registry.get(ROUTE_CHECKS)
+                .tag("privilege", "delete:orders").tag("outcome", "abstained").timer().count());
+    }
+
+    @Test
+    void testFilterRecordsDurationAndEvaluationsPerStrategy() {
+        cut.recordFilter("dictionary", 3, 1_000);
+        cut.recordFilter("dictionary", 5, 1_000);
+
+        assertEquals(2, registry.get(FILTER).tag("strategy", "dictionary").timer().count());
+        DistributionSummary evaluations = registry.get(FILTER_EVALUATIONS).tag("strategy", "dictionary").summary();
+        assertEquals(2, evaluations.count());
+        assertEquals(8, evaluations.totalAmount());
+    }
+
+    @Test
+    void testTimedAuthorizationManagerRecordsEachCheck() {
+        Authentication alice = new TestingAuthenticationToken("alice", "password");
+        AuthorizationManager<Object> check = (authentication, object) -> new AuthorizationDecision(true);
+        TimedAuthorizationManager<Object> timed = new TimedAuthorizationManager<>(check,
+                (result, durationNanos) -> cut.recordDecision(CREATE_ORDERS, result, durationNanos));
+
+        assertTrue(timed.authorize(() -> alice, null).isGranted());
+        assertTrue(timed.authorize(() -> alice, null).isGranted());
+
+        assertEquals(2, registry.get(DECISIONS)
+                .tag("privilege", "create:orders").tag("outcome", "granted").timer().count());
+    }
+}
@@ -0,0 +1,95 @@
+package com.sap.cloud.security.ams.samples.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import org.junit.jupiter.api.*;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.authorization.AuthorizationResult;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+class CachingAuthorizationManagerTest {
+
+    private final AtomicInteger evaluations = new AtomicInteger();
+    private final AuthorizationManager<Object> check = (authentication, object) -> {
+        evaluations.incrementAndGet();
+        return new AuthorizationDecision("alice".equals(authentication.get().getName()));
+    };
+    private CachingAuthorizationManager<Object> cut;
+
+    @BeforeEach
+    void setUp() {
+        cut = new CachingAuthorizationManager<>(check, Caffeine.newBuilder()
+                .maximumSize(10)
+                .expireAfterWrite(Duration.ofMinutes(1))
+                .build());
+    }
+
+    @Test
+    void testResultIsCachedPerToken() {
+        Authentication alice = jwtAuthentication("token-alice", "alice");
+        Authentication bob = jwtAuthentication("token-bob", "bob");
+
+        assertTrue(cut.authorize(() -> alice, null).isGranted());
+        assertTrue(cut.authorize(() -> alice, null).isGranted());
+        assertFalse(cut.authorize(() -> bob, null).isGranted());
+        assertFalse(cut.authorize(() -> bob, null).isGranted());
+
+        assertEquals(2, evaluations.get());
+    }
+
+    @Test
+    void testRequestsWithoutTokenAreAlwaysEvaluated() {
+        Authentication alice = new TestingAuthenticationToken("alice", "password");
+
+        cut.authorize(() -> alice, null);
+        cut.authorize(() -> alice, null);
+
+        assertEquals(2, evaluations.get());
+    }
+
+    @Test
+    void testAbstainingResultIsNotCached() {
+        AuthorizationManager<Object> abstaining = (authentication, object) -> {
+            evaluations.incrementAndGet();
+            return null;
+        };
+        cut = new CachingAuthorizationManager<>(abstaining, Caffeine.newBuilder().maximumSize(10).build());
+        Authentication alice = jwtAuthentication("token-alice", "alice");
+
+        assertNull(cut.authorize(() -> alice, null));
+        assertNull(cut.authorize(() -> alice, null));
+
+        assertEquals(2, evaluations.get());
+    }
+
+    @Test
+    void testInvalidateAllEvaluatesAgain() {
+        RouteCheckCaches caches = new RouteCheckCaches(Duration.ofMinutes(1), 10);
+        cut = new CachingAuthorizationManager<>(check, caches.forPrivilege(Privileges.READ_PRODUCTS));
+        Authentication alice = jwtAuthentication("token-alice", "alice");
+
+        AuthorizationResult first = cut.authorize(() -> alice, null);
+        caches.invalidateAll();
+        AuthorizationResult second = cut.authorize(() -> alice, null);
+
+        assertEquals(first.isGranted(), second.isGranted());
+        assertEquals(2, evaluations.get());
+    }
+
+    private static Authentication jwtAuthentication(String tokenValue, String subject) {
+        Jwt jwt = Jwt.withTokenValue(tokenValue)
+                .header("alg", "none")
+                .subject(subject)
+                .build();
+        return new JwtAuthenticationToken(jwt, null, subject);
+    }
+}
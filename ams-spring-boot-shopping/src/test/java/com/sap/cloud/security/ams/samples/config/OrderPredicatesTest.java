@@ -0,0 +1,205 @@
+package com.sap.cloud.security.ams.samples.config;
+
+import static com.sap.cloud.security.ams.samples.config.AmsAttributes.ORDER_CREATED_BY;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import com.sap.cloud.security.ams.api.Decision;
+import com.sap.cloud.security.ams.samples.config.OrderPredicates.CreatorFilter;
+import com.sap.cloud.security.ams.samples.db.ColumnarOrderStore;
+import com.sap.cloud.security.ams.samples.db.InMemoryOrderStore;
+import com.sap.cloud.security.ams.samples.db.OrderStore;
+import com.sap.cloud.security.ams.samples.model.Order;
+
+import org.junit.jupiter.api.*;
+
+class OrderPredicatesTest {
+
+    private static final Set<String> READABLE_CREATORS = Set.of("user0", "user3", "user7");
+
+    private final List<Order> orders = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        for (int id = 1; id <= 1_000; id++) {
+            orders.add(new Order(id, 1, 1, 10.0, "user" + (id % 10)));
+        }
+    }
+
+    @Test
+    void testCreatorIndexMatchesPerOrderEvaluation() {
+        Decision decision = conditionalDecision();
+        int[] expected = orders.stream()
+                .filter(order -> decision.apply(Map.of(ORDER_CREATED_BY, order.getCreatedBy())).isGranted())
+                .mapToInt(Order::getId)
+                .toArray();
+
+        for (OrderStore store : List.of(new InMemoryOrderStore(), new ColumnarOrderStore())) {
+            orders.forEach(store::put);
+            CreatorFilter filter = OrderPredicates.compileCreatorFilter(decision);
+
+            assertArrayEquals(expected, store.getIdsByCreators(filter), store.getClass().getSimpleName());
+            assertEquals(10, filter.evaluations(), store.getClass().getSimpleName());
+        }
+    }
+
+    @Test
+    void testCreatorFilterOfUnconditionalDecisions() {
+        Decision granted = mock(Decision.class);
+        when(granted.isGranted()).thenReturn(true);
+        Decision denied = mock(Decision.class);
+        when(denied.isDenied()).thenReturn(true);
+        InMemoryOrderStore store = new InMemoryOrderStore();
+        orders.forEach(store::put);
+
+        CreatorFilter all = OrderPredicates.compileCreatorFilter(granted);
+        CreatorFilter none = OrderPredicates.compileCreatorFilter(denied);
+
+        assertEquals(orders.size(), store.getIdsByCreators(all).length);
+        assertEquals(0, store.getIdsByCreators(none).length);
+        assertEquals(0, all.evaluations());
+        assertEquals(0, none.evaluations());
+        verify(granted, never()).apply(any());
+        verify(denied, never()).apply(any());
+    }
+
+    @Test
+    void testCompiledPredicateMatchesPerOrderEvaluation() {
+        Decision decision = conditionalDecision();
+        List<Order> expected = orders.stream()
+                .filter(order -> decision.apply(Map.of(ORDER_CREATED_BY, order.getCreatedBy())).isGranted())
+                .toList();
+
+        Predicate<Order> isReadable = OrderPredicates.compile(decision);
+
+        assertEquals(expected, orders.stream().filter(isReadable).toList());
+        assertEquals(300, expected.size());
+    }
+
+    @Test
+    void testCompiledPredicateEvaluatesEachCreatorOnce() {
+        Decision decision = conditionalDecision();
+        Predicate<Order> isReadable = OrderPredicates.compile(decision);
+
+        orders.forEach(isReadable::test);
+        orders.forEach(isReadable::test);
+
+        verify(decision, times(10)).apply(any());
+        verify(decision).apply(Map.of(ORDER_CREATED_BY, "user3"));
+    }
+
+    @Test
+    void testCompiledPredicateOfUnconditionalDecisions() {
+        Decision granted = mock(Decision.class);
+        when(granted.isGranted()).thenReturn(true);
+        Decision denied = mock(Decision.class);
+        when(denied.isDenied()).thenReturn(true);
+
+        assertTrue(orders.stream().allMatch(OrderPredicates.compile(granted)));
+        assertTrue(orders.stream().noneMatch(OrderPredicates.compile(denied)));
+        verify(granted, never()).apply(any());
+        verify(denied, never()).apply(any());
+    }
+
+    @Test
+    void testBulkFilterMatchesPerOrderEvaluation() {
+        Decision decision = conditionalDecision();
+        BitSet expected = new BitSet();
+        for (int row = 0; row < orders.size(); row++) {
+            expected.set(row, decision.apply(Map.of(ORDER_CREATED_BY, orders.get(row).getCreatedBy())).isGranted());
+        }
+        clearInvocations(decision);
+
+        CreatorFilter filter = OrderPredicates.compileCreatorFilter(decision);
+
+        assertEquals(expected, filter.filterOrders(orders));
+        assertEquals(300, expected.cardinality());
+        assertEquals(10, filter.evaluations());
+        assertEquals(expected, OrderPredicates.filterOrders(decision, orders));
+        verify(decision, times(20)).apply(any());
+    }
+
+    @Test
+    void testBulkFilterOfUnconditionalDecisions() {
+        Decision granted = mock(Decision.class);
+        when(granted.isGranted()).thenReturn(true);
+        Decision denied = mock(Decision.class);
+        when(denied.isDenied()).thenReturn(true);
+
+        assertEquals(orders.size(), OrderPredicates.filterOrders(granted, orders).cardinality());
+        assertTrue(OrderPredicates.filterOrders(denied, orders).isEmpty());
+        assertTrue(OrderPredicates.filterOrders(conditionalDecision(), List.of()).isEmpty());
+        verify(granted, never()).apply(any());
+        verify(denied, never()).apply(any());
+    }
+
+    @Test
+    void testSingleCreatorOfEqualityCondition() {
+        Decision ownOrders = conditionalDecision("bob"::equals);
+
+        assertEquals(Optional.of("bob"), OrderPredicates.singleCreator(ownOrders, List.of("bob")));
+        assertTrue(OrderPredicates.singleCreator(ownOrders, List.of("bob", "carol")).isEmpty());
+        assertTrue(OrderPredicates.singleCreator(ownOrders, List.of(1)).isEmpty());
+        assertTrue(OrderPredicates.singleCreator(ownOrders, List.of()).isEmpty());
+    }
+
+    @Test
+    void testSingleCreatorOfOtherConditions() {
+        // createdBy <> 'bob', createdBy <= 'bob', createdBy >= 'bob', createdBy LIKE 'bo%' and createdBy IN ('bob', 'carol')
+        List<Predicate<String>> conditions = List.of(
+                createdBy -> !createdBy.equals("bob"),
+                createdBy -> createdBy.compareTo("bob") <= 0,
+                createdBy -> createdBy.compareTo("bob") >= 0,
+                createdBy -> createdBy.startsWith("bo"),
+                READABLE_CREATORS::contains);
+
+        for (Predicate<String> condition : conditions) {
+            assertTrue(OrderPredicates.singleCreator(conditionalDecision(condition), List.of("bob")).isEmpty());
+        }
+        assertTrue(OrderPredicates.singleCreator(conditionalDecision("bo%"::equals), List.of("bo%")).isEmpty());
+    }
+
+    @Test
+    void testSingleCreatorOfUnconditionalDecisions() {
+        Decision granted = mock(Decision.class);
+        when(granted.isGranted()).thenReturn(true);
+        Decision denied = mock(Decision.class);
+        when(denied.isDenied()).thenReturn(true);
+
+        assertTrue(OrderPredicates.singleCreator(granted, List.of("bob")).isEmpty());
+        assertTrue(OrderPredicates.singleCreator(denied, List.of("bob")).isEmpty());
+    }
+
+    /**
+     * @return a conditional decision that grants the orders of {@link #READABLE_CREATORS}
+     */
+    private static Decision conditionalDecision() {
+        return conditionalDecision(READABLE_CREATORS::contains);
+    }
+
+    /**
+     * @return a conditional decision that grants the orders of the creators that pass the condition
+     */
+    private static Decision conditionalDecision(Predicate<String> condition) {
+        Decision granted = mock(Decision.class);
+        when(granted.isGranted()).thenReturn(true);
+        Decision denied = mock(Decision.class);
+        when(denied.isDenied()).thenReturn(true);
+
+        Decision decision = mock(Decision.class);
+        when(decision.apply(any())).thenAnswer(invocation -> {
+            Map<?, ?> attributes = invocation.getArgument(0);
+            return condition.test((String) attributes.get(ORDER_CREATED_BY)) ? granted : denied;
+        });
+        return decision;
+    }
+}
@@ -0,0 +1,138 @@
+package com.sap.cloud.security.ams.samples.benchmarks;
+
+import com.sap.cloud.security.ams.api.AuthorizationManagementService;
+import com.sap.cloud.security.ams.config.LocalAuthorizationManagementServiceConfig;
+import com.sap.cloud.security.ams.core.SciAuthorizationsProvider;
+import com.sap.cloud.security.ams.samples.auth.ShoppingAuthorizations;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * AMS client on the DCN that the dcl-compiler-plugin of the benchmarks generates
+ * from the DCL of the Javalin shopping sample and the benchmark package, set up
+ * like in its TestAuthHandler.
+ *
+ * <p>
+ * The DCN is read from the classpath, where the build puts it. When it is
+ * packaged in the benchmarks jar, it is extracted to a temporary directory once
+ * per JVM. It can be overridden with {@code -Dams.dcn.path=...}. The policy
+ * assignments are generated for the users of {@link PrincipalState}.
+ */
+@State(Scope.Benchmark)
+public class AmsClientState {
+    static final String TENANT = "benchmark";
+    private static final String DCN_RESOURCE = "ams/dcn";
+    private static Path extractedDcnPath;
+
+    public AuthorizationManagementService ams;
+    public SciAuthorizationsProvider<ShoppingAuthorizations> authProvider;
+    private Path policyAssignments;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Path dcnPath = getDcnPath();
+
+        policyAssignments = writePolicyAssignments();
+        ams = startAmsClient(dcnPath, policyAssignments);
+        authProvider = SciAuthorizationsProvider.create(ams, ShoppingAuthorizations::of);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        ams.stop();
+        Files.deleteIfExists(policyAssignments);
+    }
+
+    static Path getDcnPath() throws IOException, URISyntaxException {
+        String configuredPath = System.getProperty("ams.dcn.path");
+        if (configuredPath != null) {
+            Path dcnPath = Path.of(configuredPath);
+            if (!Files.isDirectory(dcnPath)) {
+                throw new IllegalStateException("DCN not found at " + dcnPath.toAbsolutePath());
+            }
+            return dcnPath;
+        }
+
+        URL dcn = AmsClientState.class.getClassLoader().getResource(DCN_RESOURCE);
+        if (dcn == null) {
+            throw new IllegalStateException("DCN not found on the classpath at " + DCN_RESOURCE
+                    + ", build the benchmarks with mvn package or set -Dams.dcn.path");
+        }
+        URI uri = dcn.toURI();
+        return "file".equals(uri.getScheme()) ? Path.of(uri) : extractDcn(uri);
+    }
+
+    /**
+     * Copy the DCN from the jar into a temporary directory, as the AMS client reads
+     * it from the file system
+     */
+    private static synchronized Path extractDcn(URI uri) throws IOException {
+        if (extractedDcnPath != null) {
+            return extractedDcnPath;
+        }
+
+        Path target = Files.createTempDirectory("benchmark-dcn");
+        try (FileSystem jar = FileSystems.newFileSystem(uri, Map.of());
+                Stream<Path> files = Files.walk(jar.getPath(DCN_RESOURCE))) {
+            Path source = jar.getPath(DCN_RESOURCE);
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Path copy = target.resolve(source.relativize(file).toString());
+                if (Files.isDirectory(file)) {
+                    Files.createDirectories(copy);
+                } else {
+                    Files.copy(file, copy);
+                }
+            }
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> deleteRecursively(target)));
+        extractedDcnPath = target;
+        return target;
+    }
+
+    private static void deleteRecursively(Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        } catch (IOException e) {
+            // left in the temporary directory
+        }
+    }
+
+    static AuthorizationManagementService startAmsClient(Path dcnPath, Path policyAssignments) throws Exception {
+        LocalAuthorizationManagementServiceConfig config = new LocalAuthorizationManagementServiceConfig()
+                .withPolicyAssignmentsPath(policyAssignments);
+        AuthorizationManagementService ams = AuthorizationManagementService.fromLocalDcn(dcnPath, config);
+        ams.whenReady().get(30, TimeUnit.SECONDS);
+        return ams;
+    }
+
+    static Path writePolicyAssignments() throws IOException {
+        StringBuilder json = new StringBuilder("{\"" + TENANT + "\": {");
+        PrincipalState.PolicySet[] policySets = PrincipalState.PolicySet.values();
+        for (int i = 0; i < policySets.length; i++) {
+            json.append(i > 0 ? ", " : "")
+                    .append('"').append(policySets[i].userId()).append("\": [");
+            String[] policies = policySets[i].policies;
+            for (int p = 0; p < policies.length; p++) {
+                json.append(p > 0 ? ", " : "").append('"').append(policies[p]).append('"');
+            }
+            json.append(']');
+        }
+        json.append("}}");
+
+        Path file = Files.createTempFile("benchmarkPolicyAssignments", ".json");
+        Files.writeString(file, json);
+        return file;
+    }
+}
@@ -0,0 +1,72 @@
+package com.sap.cloud.security.ams.samples.benchmarks;
+
+import com.sap.cloud.security.ams.api.Decision;
+import com.sap.cloud.security.ams.api.Principal;
+import com.sap.cloud.security.ams.api.Privilege;
+import com.sap.cloud.security.ams.dcn.visitor.SqlExtractor;
+import com.sap.cloud.security.ams.samples.auth.ShoppingAuthorizations;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static com.sap.cloud.security.ams.samples.auth.Role.*;
+
+/**
+ * Benchmarks for the AMS calls on the request path of the shopping samples
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthorizationBenchmark {
+
+    /**
+     * Policy resolution for a principal, done once per request by the AuthHandler
+     */
+    @Benchmark
+    public ShoppingAuthorizations getAuthorizations(AmsClientState client, PrincipalState principal) {
+        return client.authProvider.getAuthorizations(Principal.fromSecurityContext());
+    }
+
+    @Benchmark
+    public Decision checkPrivilegeUnconditional(PrincipalState principal) {
+        return principal.authorizations.getBaseAuthorizations()
+                .checkPrivilege(READ_PRODUCTS.getAction(), READ_PRODUCTS.getResource());
+    }
+
+    @Benchmark
+    public Decision checkPrivilegeConditional(PrincipalState principal) {
+        return principal.authorizations.getBaseAuthorizations()
+                .checkPrivilege(READ_ORDERS.getAction(), READ_ORDERS.getResource());
+    }
+
+    /**
+     * Context-free check as done by the AuthHandler, answered from the decisions cached per role
+     */
+    @Benchmark
+    public Decision checkRole(PrincipalState principal) {
+        return principal.authorizations.checkRole(READ_ORDERS);
+    }
+
+    @Benchmark
+    public Decision checkCreateOrder(PrincipalState principal) {
+        return principal.authorizations.checkCreateOrder("accessory", 80.0);
+    }
+
+    @Benchmark
+    public Set<Privilege> getPotentialPrivileges(PrincipalState principal) {
+        return principal.authorizations.getBaseAuthorizations().getPotentialPrivileges();
+    }
+
+    @Benchmark
+    public Decision decisionApply(PrincipalState principal) {
+        return principal.readOrdersDecision.apply(principal.ownOrderAttributes);
+    }
+
+    @Benchmark
+    public SqlExtractor.SqlResult decisionVisitSqlExtractor(PrincipalState principal) {
+        return principal.readOrdersDecision.visit(principal.sqlExtractor);
+    }
+}
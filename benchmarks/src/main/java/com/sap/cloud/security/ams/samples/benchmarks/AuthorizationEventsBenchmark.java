@@ -0,0 +1,68 @@
+package com.sap.cloud.security.ams.samples.benchmarks;
+
+import com.sap.cloud.security.ams.samples.auth.AuthorizationEvents;
+import com.sap.cloud.security.token.SapIdToken;
+import com.sap.cloud.security.token.SecurityContext;
+import jdk.jfr.Recording;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for committing an authorization JFR event, including the HMAC of the principal's user ID
+ *
+ * <p>
+ * With {@code recording}, the event is enabled without threshold, so every commit computes the principal hash:
+ * {@code sameToken} hits the per-thread memo of the hash, while {@code newToken} switches between two tokens of the
+ * same user, as for consecutive requests, and computes the HMAC on every commit.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AuthorizationEventsBenchmark {
+
+    @Param({"true", "false"})
+    public boolean recording;
+
+    private Recording jfr;
+    private SapIdToken token;
+    private SapIdToken otherToken;
+    private boolean other;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        token = PrincipalState.createToken("benchmark-user");
+        otherToken = PrincipalState.createToken("benchmark-user");
+        if (recording) {
+            jfr = new Recording();
+            jfr.enable(AuthorizationEvents.TokenValidation.class).withThreshold(Duration.ZERO);
+            jfr.start();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (jfr != null) {
+            jfr.close();
+        }
+        SecurityContext.clear();
+        AuthorizationEvents.clear();
+    }
+
+    @Benchmark
+    public void sameToken() {
+        SecurityContext.setToken(token);
+        AuthorizationEvents.commit(AuthorizationEvents.beginTokenValidation(), true, true);
+    }
+
+    @Benchmark
+    public void newToken() {
+        other = !other;
+        SecurityContext.setToken(other ? otherToken : token);
+        AuthorizationEvents.commit(AuthorizationEvents.beginTokenValidation(), true, false);
+    }
+}
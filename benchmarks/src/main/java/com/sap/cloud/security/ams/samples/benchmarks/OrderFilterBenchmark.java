@@ -0,0 +1,89 @@
+package com.sap.cloud.security.ams.samples.benchmarks;
+
+import com.sap.cloud.security.ams.samples.auth.OrderPredicates;
+import com.sap.cloud.security.ams.samples.db.InMemoryOrderStore;
+import com.sap.cloud.security.ams.samples.model.Order;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static com.sap.cloud.security.ams.samples.auth.AmsAttributes.ORDER_CREATED_BY;
+
+/**
+ * Benchmarks for filtering orders with a conditional read:orders decision, as done by GET /orders
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class OrderFilterBenchmark {
+    private static final int CREATORS = 100;
+
+    @Param({"1000", "100000"})
+    public int orderCount;
+
+    private List<Order> orders;
+    private InMemoryOrderStore store;
+
+    @Setup(Level.Trial)
+    public void setUp(PrincipalState principal) {
+        orders = new ArrayList<>(orderCount);
+        for (int i = 0; i < orderCount; i++) {
+            // every CREATORS-th order belongs to the benchmarked principal
+            String createdBy = i % CREATORS == 0 ? principal.policySet.userId() : "user" + (i % CREATORS);
+            orders.add(new Order(i + 1, 1, 1, 10.0, createdBy));
+        }
+        store = new InMemoryOrderStore();
+        orders.forEach(store::put);
+    }
+
+    @Benchmark
+    public List<Order> applyPerOrder(PrincipalState principal) {
+        List<Order> result = new ArrayList<>();
+        for (Order order : orders) {
+            if (principal.readOrdersDecision.apply(Map.of(ORDER_CREATED_BY, order.getCreatedBy())).isGranted()) {
+                result.add(order);
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<Order> compiledPredicate(PrincipalState principal) {
+        Predicate<Order> isReadable = OrderPredicates.compile(principal.readOrdersDecision);
+        List<Order> result = new ArrayList<>();
+        for (Order order : orders) {
+            if (isReadable.test(order)) {
+                result.add(order);
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<Order> creatorIndex(PrincipalState principal) {
+        int[] ids = store.getIdsByCreators(OrderPredicates.compileCreatorFilter(principal.readOrdersDecision));
+        List<Order> result = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            store.get(id).ifPresent(result::add);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<Order> bulkFilter(PrincipalState principal) {
+        BitSet readable = OrderPredicates.filterOrders(principal.readOrdersDecision, orders);
+        List<Order> result = new ArrayList<>(readable.cardinality());
+        for (int row = readable.nextSetBit(0); row >= 0; row = readable.nextSetBit(row + 1)) {
+            result.add(orders.get(row));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,98 @@
+package com.sap.cloud.security.ams.samples.benchmarks;
+
+import com.sap.cloud.security.ams.api.Decision;
+import com.sap.cloud.security.ams.api.Principal;
+import com.sap.cloud.security.ams.api.expression.AttributeName;
+import com.sap.cloud.security.ams.dcn.visitor.SqlExtractor;
+import com.sap.cloud.security.ams.samples.auth.ShoppingAuthorizations;
+import com.sap.cloud.security.token.SapIdToken;
+import com.sap.cloud.security.token.SecurityContext;
+import com.sap.cloud.security.xsuaa.jwt.Base64JwtDecoder;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.sap.cloud.security.ams.samples.auth.AmsAttributes.ORDER_CREATED_BY;
+import static com.sap.cloud.security.ams.samples.auth.Role.READ_ORDERS;
+
+/**
+ * Principal with a policy set of a given size and the AMS objects derived from it.
+ *
+ * <p>
+ * Every policy set contains ReadOwnOrders, so read:orders is always conditional. The larger sets add
+ * policies of the benchmark package that restrict read:orders to other creators and create:orders to
+ * other product categories, so their conditions grow with the number of policies.
+ */
+@State(Scope.Thread)
+public class PrincipalState {
+
+    public enum PolicySet {
+        SMALL(0, "shopping.ReadOwnOrders"),
+        MEDIUM(0, "shopping.ReadOwnOrders", "shopping.ReadProducts", "local.OrderAccessory"),
+        LARGE(0, "shopping.ReadOwnOrders", "shopping.ReadProducts", "local.OrderAccessory", "shopping.CreateOrders"),
+        // LARGE plus 4 and 16 policies of each kind of the benchmark package
+        XLARGE(4, "shopping.ReadOwnOrders", "shopping.ReadProducts", "local.OrderAccessory", "shopping.CreateOrders"),
+        XXLARGE(16, "shopping.ReadOwnOrders", "shopping.ReadProducts", "local.OrderAccessory",
+                "shopping.CreateOrders");
+
+        final String[] policies;
+
+        PolicySet(int benchmarkPolicies, String... policies) {
+            this.policies = Stream.concat(Arrays.stream(policies),
+                    IntStream.rangeClosed(1, benchmarkPolicies)
+                            .boxed()
+                            .flatMap(i -> Stream.of("benchmark.ReadOrdersOfUser" + i, "benchmark.OrderCategory" + i)))
+                    .toArray(String[]::new);
+        }
+
+        String userId() {
+            return name().toLowerCase();
+        }
+    }
+
+    @Param({"SMALL", "MEDIUM", "LARGE", "XLARGE", "XXLARGE"})
+    public PolicySet policySet;
+
+    public ShoppingAuthorizations authorizations;
+    public Decision readOrdersDecision;
+    public Map<AttributeName, Object> ownOrderAttributes;
+    public SqlExtractor sqlExtractor;
+
+    @Setup(Level.Trial)
+    public void setUp(AmsClientState client) {
+        SecurityContext.setToken(createToken(policySet.userId()));
+
+        authorizations = client.authProvider.getAuthorizations(Principal.fromSecurityContext());
+        readOrdersDecision = authorizations.getBaseAuthorizations()
+                .checkPrivilege(READ_ORDERS.getAction(), READ_ORDERS.getResource());
+        ownOrderAttributes = Map.of(ORDER_CREATED_BY, policySet.userId());
+        sqlExtractor = new SqlExtractor(Map.of(ORDER_CREATED_BY, "createdBy"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SecurityContext.clear();
+    }
+
+    static SapIdToken createToken(String userId) {
+        return new SapIdToken(Base64JwtDecoder.getInstance().decode(createJwt(userId)));
+    }
+
+    /**
+     * Create an unsigned JWT for the user, as accepted by the local test setup
+     */
+    static String createJwt(String userId) {
+        String claims = String.format("{\"sub\": \"%1$s\", \"scim_id\": \"%1$s\", \"user_uuid\": \"%1$s\", "
+                + "\"sap_id_type\": \"user\", \"app_tid\": \"%2$s\", "
+                + "\"iss\": \"https://benchmark.accounts400.ondemand.com\", \"aud\": \"benchmark\"}",
+                userId, AmsClientState.TENANT);
+        Base64.Encoder encoder = Base64.getEncoder();
+        return encoder.encodeToString("{}".getBytes(StandardCharsets.UTF_8)) + "."
+                + encoder.encodeToString(claims.getBytes(StandardCharsets.UTF_8)) + ".signature";
+    }
+}
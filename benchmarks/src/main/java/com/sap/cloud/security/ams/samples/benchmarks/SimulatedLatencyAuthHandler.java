@@ -0,0 +1,58 @@
+package com.sap.cloud.security.ams.samples.benchmarks;
+
+import com.sap.cloud.security.ams.api.AuthorizationManagementService;
+import com.sap.cloud.security.ams.samples.auth.AuthHandler;
+import com.sap.cloud.security.token.SapIdToken;
+import com.sap.cloud.security.token.SecurityContext;
+import com.sap.cloud.security.xsuaa.jwt.Base64JwtDecoder;
+import io.javalin.http.Context;
+import io.javalin.http.UnauthorizedResponse;
+
+import java.nio.file.Path;
+
+/**
+ * AuthHandler on the local benchmark DCN that accepts unsigned tokens like the
+ * TestAuthHandler of the shopping sample, but blocks for a configurable time per
+ * request to simulate token validation with a remote JWKS fetch.
+ *
+ * <p>
+ * The latency is configured with {@code -Dbenchmark.auth.latency-ms=...}
+ * (default: 20).
+ */
+public class SimulatedLatencyAuthHandler extends AuthHandler {
+    private static final long LATENCY_MS = Long.getLong("benchmark.auth.latency-ms", 20);
+
+    @Override
+    protected void setupAuthentication() {
+        // tokens are decoded without validation
+    }
+
+    @Override
+    protected AuthorizationManagementService createAmsClient() {
+        try {
+            Path policyAssignments = AmsClientState.writePolicyAssignments();
+            policyAssignments.toFile().deleteOnExit();
+            return AmsClientState.startAmsClient(AmsClientState.getDcnPath(), policyAssignments);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to create AMS client", e);
+        }
+    }
+
+    @Override
+    protected void authenticate(Context ctx) {
+        String authHeader = ctx.header("Authorization");
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            throw new UnauthorizedResponse();
+        }
+
+        try {
+            Thread.sleep(LATENCY_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnauthorizedResponse();
+        }
+
+        String token = authHeader.substring("Bearer ".length());
+        SecurityContext.setToken(new SapIdToken(Base64JwtDecoder.getInstance().decode(token)));
+    }
+}
@@ -0,0 +1,95 @@
+package com.sap.cloud.security.ams.samples.benchmarks;
+
+import com.sap.cloud.security.ams.samples.AppFactory;
+import io.javalin.Javalin;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the request throughput of the Javalin shopping sample on Jetty's
+ * platform thread pool with virtual-thread request handling, while token
+ * validation blocks (see {@link SimulatedLatencyAuthHandler}).
+ *
+ * <p>
+ * Not a JMH benchmark, as it measures a running server end to end. Run it with
+ * {@code java -cp target/benchmarks.jar com.sap.cloud.security.ams.samples.benchmarks.ThroughputComparison [concurrency] [requests]}
+ * on Java 21 or later; on older JVMs both runs use platform threads.
+ */
+public class ThroughputComparison {
+    public static void main(String[] args) throws Exception {
+        int concurrency = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+
+        double platform = run(false, concurrency, requests);
+        double virtual = run(true, concurrency, requests);
+
+        System.out.printf("platform threads: %.0f req/s%n", platform);
+        System.out.printf("virtual threads:  %.0f req/s (%.2fx)%n", virtual, virtual / platform);
+    }
+
+    private static double run(boolean virtualThreads, int concurrency, int requests) throws Exception {
+        SimulatedLatencyAuthHandler authHandler = new SimulatedLatencyAuthHandler();
+        // the mode is passed explicitly, so a VIRTUAL_THREADS environment variable cannot override it
+        Javalin app = AppFactory.createApp(authHandler, virtualThreads).start(freePort());
+        try {
+            HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + app.port() + "/products"))
+                    .header("Authorization", "Bearer " + PrincipalState.createJwt(PrincipalState.PolicySet.LARGE.userId()))
+                    .build();
+
+            // warm up the JIT and the connection pool
+            sendAll(client, request, concurrency, Math.min(requests, 2 * concurrency));
+
+            long start = System.nanoTime();
+            int failed = sendAll(client, request, concurrency, requests);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            if (failed > 0) {
+                System.out.printf("%d of %d requests failed%n", failed, requests);
+            }
+            return requests / seconds;
+        } finally {
+            app.stop();
+            authHandler.getAmsClient().stop();
+        }
+    }
+
+    /**
+     * Send the request the given number of times with at most {@code concurrency}
+     * requests in flight
+     *
+     * @return number of requests without a 200 response
+     */
+    private static int sendAll(HttpClient client, HttpRequest request, int concurrency, int requests)
+            throws InterruptedException {
+        Semaphore inFlight = new Semaphore(concurrency);
+        AtomicInteger failed = new AtomicInteger();
+        CompletableFuture<?>[] responses = new CompletableFuture<?>[requests];
+        for (int i = 0; i < requests; i++) {
+            inFlight.acquire();
+            responses[i] = client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        if (error != null || response.statusCode() != 200) {
+                            failed.incrementAndGet();
+                        }
+                        inFlight.release();
+                    });
+        }
+        CompletableFuture.allOf(responses).exceptionally(e -> null).join();
+        return failed.get();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
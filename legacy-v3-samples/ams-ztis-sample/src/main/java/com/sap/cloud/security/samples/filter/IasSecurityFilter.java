@@ -19,6 +19,11 @@ import java.util.Objects;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Validates the IAS token of every request. Unlike the jakarta-ams-sample, this filter does not
+ * cache validated tokens: this sample showcases zero trust with short-lived, automatically rotated
+ * certificates, so every request is verified in full.
+ */
 @WebFilter(urlPatterns = "/api/*", filterName = "iasTokenValidator") // filter for any endpoint
 public class IasSecurityFilter implements Filter {
   private static final Logger LOGGER = LoggerFactory.getLogger(IasSecurityFilter.class);
@@ -29,6 +29,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 
+/**
+ * Writes audit logs for policy evaluations synchronously. See the jakarta-ams-sample for writing
+ * them asynchronously with a bounded queue.
+ */
 @WebFilter(filterName = "ams-audit-logging", urlPatterns = "/app/*")
 public class PolicyDecisionAuditLogFilter implements Filter {
   private static final Logger LOGGER = LoggerFactory.getLogger(PolicyDecisionAuditLogFilter.class);
@@ -71,7 +75,7 @@ public class PolicyDecisionAuditLogFilter implements Filter {
     try {
       chain.doFilter(request, response);
     } finally {
-      MDC.remove("sap-passport");
+      MDC.remove(MDC_SAP_PASSPORT);
     }
   }
 
@@ -0,0 +1,283 @@
+/*
+ * SPDX-FileCopyrightText: 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.sap.cloud.security.samples.audit;
+
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import static com.sap.cloud.security.ams.logging.PolicyEvaluationV2AuditLogger.MDC_SAP_PASSPORT;
+
+/**
+ * Policy evaluation listener that hands evaluations to a delegate, e.g. the
+ * {@code PolicyEvaluationV2AuditLogger}, on a background thread, so writing audit logs does not add to the request
+ * latency.
+ * <p>
+ * Evaluations are buffered in a bounded queue and written in batches of up to {@code batchSize} entries per wakeup of
+ * the drainer thread. The {@code sap_passport} of the request is captured from the MDC when an evaluation is enqueued
+ * and restored on the drainer thread while the delegate writes it, so audit log entries stay correlated with their
+ * request. What happens when the queue is full is defined by the {@link OverflowPolicy}.
+ * <p>
+ * With {@link OverflowPolicy#SPILL_TO_FILE}, each entry that does not fit into the queue is appended to the spill
+ * file as one JSON object per line with the fields {@code timestamp}, {@code sapPassport} and {@code evaluation}, the
+ * latter holding the string representation of the evaluation. The spill file is <b>not</b> replayed on startup: the
+ * evaluations cannot be reconstructed from it, so it is meant for reconciling the audit log manually. Its path is
+ * logged on startup if it already contains entries from an earlier run.
+ *
+ * @param <T> type of the policy evaluation results passed to the listener
+ */
+public class AsyncAuditLogListener<T> implements Consumer<T>, AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncAuditLogListener.class);
+    private static final long POLL_INTERVAL_MS = 100;
+    private static final long CLOSE_TIMEOUT_MS = 10_000;
+
+    /**
+     * Behavior when the queue is full
+     */
+    public enum OverflowPolicy {
+        /**
+         * Block the request thread until the drainer has made room, so no audit log entry is lost
+         */
+        BLOCK,
+        /**
+         * Discard the oldest queued entry to make room for the new one
+         */
+        DROP_OLDEST,
+        /**
+         * Write the new entry to a local spill file instead of the audit log service
+         */
+        SPILL_TO_FILE
+    }
+
+    private final Consumer<T> delegate;
+    private final BlockingQueue<QueuedEvaluation<T>> queue;
+    private final int batchSize;
+    private final OverflowPolicy overflowPolicy;
+    private final Path spillFile;
+    private final Thread drainer;
+    private volatile boolean running = true;
+    private BufferedWriter spillWriter;
+
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+
+    /**
+     * @param delegate       listener that writes the audit log entries
+     * @param capacity       maximum number of queued evaluations
+     * @param batchSize      maximum number of evaluations written per wakeup of the drainer thread
+     * @param overflowPolicy behavior when the queue is full
+     * @param spillFile      JSON lines file for {@link OverflowPolicy#SPILL_TO_FILE}, may be null for other policies
+     */
+    public AsyncAuditLogListener(Consumer<T> delegate, int capacity, int batchSize, OverflowPolicy overflowPolicy,
+            Path spillFile) {
+        if (capacity <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("capacity and batchSize must be positive");
+        }
+        if (overflowPolicy == OverflowPolicy.SPILL_TO_FILE && spillFile == null) {
+            throw new IllegalArgumentException("spillFile is required for overflow policy " + overflowPolicy);
+        }
+        this.delegate = delegate;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.overflowPolicy = overflowPolicy;
+        this.spillFile = spillFile;
+        if (spillFile != null && Files.exists(spillFile)) {
+            LOGGER.warn("Audit log spill file {} contains entries that were not written to the audit log", spillFile);
+        }
+        this.drainer = new Thread(this::drain, "audit-log-drainer");
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    @Override
+    public void accept(T evaluation) {
+        QueuedEvaluation<T> queued = new QueuedEvaluation<>(evaluation, MDC.get(MDC_SAP_PASSPORT));
+        if (!running) {
+            // after close, write on the caller thread instead of losing the entry
+            write(queued);
+            return;
+        }
+        if (queue.offer(queued)) {
+            writeIfClosed(queued);
+            return;
+        }
+
+        switch (overflowPolicy) {
+        case BLOCK -> {
+            try {
+                queue.put(queued);
+                writeIfClosed(queued);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                dropped.increment();
+                LOGGER.warn("Interrupted while waiting for audit log queue, entry dropped");
+            }
+        }
+        case DROP_OLDEST -> {
+            while (!queue.offer(queued)) {
+                if (queue.poll() != null) {
+                    dropped.increment();
+                }
+            }
+            writeIfClosed(queued);
+        }
+        case SPILL_TO_FILE -> spill(queued);
+        }
+    }
+
+    /**
+     * Write an entry that was enqueued while the listener was closed, as the drainer and {@link #close()} may have
+     * already emptied the queue. Whoever removes the entry from the queue writes it, so it is written exactly once.
+     */
+    private void writeIfClosed(QueuedEvaluation<T> queued) {
+        if (!running && queue.remove(queued)) {
+            write(queued);
+        }
+    }
+
+    private void drain() {
+        List<QueuedEvaluation<T>> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                QueuedEvaluation<T> first = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                batch.forEach(this::write);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(QueuedEvaluation<T> queued) {
+        String previousPassport = MDC.get(MDC_SAP_PASSPORT);
+        putOrRemove(queued.sapPassport());
+        try {
+            delegate.accept(queued.evaluation());
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to write audit log entry", e);
+        } finally {
+            putOrRemove(previousPassport);
+        }
+    }
+
+    private static void putOrRemove(String sapPassport) {
+        if (sapPassport != null) {
+            MDC.put(MDC_SAP_PASSPORT, sapPassport);
+        } else {
+            MDC.remove(MDC_SAP_PASSPORT);
+        }
+    }
+
+    private synchronized void spill(QueuedEvaluation<T> queued) {
+        try {
+            if (spillWriter == null) {
+                Path directory = spillFile.toAbsolutePath().getParent();
+                if (directory != null) {
+                    Files.createDirectories(directory);
+                }
+                spillWriter = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            // JSONObject escapes line breaks, so every entry stays on its own line
+            JSONObject entry = new JSONObject()
+                    .put("timestamp", Instant.now().toString())
+                    .put("sapPassport", queued.sapPassport() != null ? queued.sapPassport() : JSONObject.NULL)
+                    .put("evaluation", String.valueOf(queued.evaluation()));
+            spillWriter.write(entry.toString());
+            spillWriter.newLine();
+            spillWriter.flush();
+            spilled.increment();
+        } catch (IOException e) {
+            dropped.increment();
+            LOGGER.error("Failed to spill audit log entry to {}", spillFile, e);
+        }
+    }
+
+    /**
+     * Number of entries that were discarded because the queue was full
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Number of entries written to the spill file because the queue was full
+     */
+    public long getSpilledCount() {
+        return spilled.sum();
+    }
+
+    /**
+     * Stop accepting entries into the queue and wait until the queued entries are written
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            drainer.join(CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (drainer.isAlive()) {
+            LOGGER.warn("{} audit log entries were not written before shutdown", queue.size());
+        } else {
+            // entries enqueued while the drainer was stopping
+            QueuedEvaluation<T> queued;
+            while ((queued = queue.poll()) != null) {
+                write(queued);
+            }
+        }
+        if (getDroppedCount() > 0 || getSpilledCount() > 0) {
+            LOGGER.warn("{} audit log entries were dropped and {} spilled to {} because the queue was full",
+                    getDroppedCount(), getSpilledCount(), spillFile);
+        }
+        synchronized (this) {
+            if (spillWriter != null) {
+                try {
+                    spillWriter.close();
+                } catch (IOException e) {
+                    LOGGER.warn("Failed to close audit log spill file {}", spillFile, e);
+                }
+            }
+        }
+    }
+
+    private record QueuedEvaluation<T>(T evaluation, String sapPassport) {
+        // identity, so that writeIfClosed only removes its own entry from the queue
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+}
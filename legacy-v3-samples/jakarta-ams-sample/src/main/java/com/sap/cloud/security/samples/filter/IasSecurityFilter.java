@@ -6,27 +6,100 @@
 package com.sap.cloud.security.samples.filter;
 
 import com.sap.cloud.security.ams.dcl.client.pdp.Attributes;
+import com.sap.cloud.security.config.Environments;
+import com.sap.cloud.security.config.OAuth2ServiceConfiguration;
 import com.sap.cloud.security.servlet.IasTokenAuthenticator;
 import com.sap.cloud.security.servlet.TokenAuthenticationResult;
 import com.sap.cloud.security.token.SecurityContext;
+import com.sap.cloud.security.token.Token;
+import com.sap.cloud.security.xsuaa.client.DefaultOAuth2TokenKeyService;
+import com.sap.cloud.security.xsuaa.client.DefaultOidcConfigurationService;
+import com.sap.cloud.security.xsuaa.client.OidcConfigurationService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import jakarta.servlet.*;
 import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 
 import static com.sap.cloud.security.token.TokenClaims.USER_NAME;
 
+/**
+ * Validates the IAS token of each request. Validated tokens are cached until they expire, so repeated
+ * requests with the same token skip the signature verification. The size of the cache is set with the
+ * environment variable TOKEN_CACHE_MAX_SIZE (default 10000, 0 disables the cache).
+ *
+ * <p>
+ * The token keys are prefetched in the background when the filter is created, retrying until it succeeds, and
+ * refreshed by a {@link JwksKeyManager} in the interval set with the environment variable JWKS_REFRESH_SECONDS
+ * (default 300).
+ */
 @WebFilter(urlPatterns = "/api/*", filterName = "iasTokenValidator") // filter for any endpoint
 public class IasSecurityFilter implements Filter {
     private static final Logger LOGGER = LoggerFactory.getLogger(IasSecurityFilter.class);
+    private static final String CLIENT_CERTIFICATE_HEADER = "x-forwarded-client-cert";
+    private static final int DEFAULT_TOKEN_CACHE_SIZE = 10_000;
+    private static final int DEFAULT_JWKS_REFRESH_SECONDS = 300;
     private final IasTokenAuthenticator iasTokenAuthenticator;
+    private final TokenValidationCache tokenCache;
+    private final JwksKeyManager keyManager;
 
     public IasSecurityFilter() {
+        int refreshSeconds = getIntEnv("JWKS_REFRESH_SECONDS", DEFAULT_JWKS_REFRESH_SECONDS);
+        keyManager = new JwksKeyManager(new DefaultOAuth2TokenKeyService(),
+                Duration.ofSeconds(Math.max(1, refreshSeconds)));
         iasTokenAuthenticator = new IasTokenAuthenticator();
+        iasTokenAuthenticator.withOAuth2TokenKeyService(keyManager);
+        prefetchTokenKeys();
+        int tokenCacheSize = getIntEnv("TOKEN_CACHE_MAX_SIZE", DEFAULT_TOKEN_CACHE_SIZE);
+        tokenCache = tokenCacheSize > 0 ? new TokenValidationCache(tokenCacheSize) : null;
+    }
+
+    /**
+     * @param tokenCache cache of validated tokens or null to validate every request
+     */
+    IasSecurityFilter(IasTokenAuthenticator iasTokenAuthenticator, TokenValidationCache tokenCache,
+            JwksKeyManager keyManager) {
+        this.iasTokenAuthenticator = iasTokenAuthenticator;
+        this.tokenCache = tokenCache;
+        this.keyManager = keyManager;
+    }
+
+    /**
+     * Prefetch the token keys for tokens that the application's own tenant issued to the application itself
+     */
+    private void prefetchTokenKeys() {
+        OAuth2ServiceConfiguration iasConfiguration = Environments.getCurrent().getIasConfiguration();
+        if (iasConfiguration == null || iasConfiguration.getUrl() == null) {
+            return;
+        }
+        Map<String, String> params = new HashMap<>();
+        params.put("x-app_tid", iasConfiguration.getProperty("app_tid"));
+        params.put("x-client_id", iasConfiguration.getClientId());
+        params.put("x-azp", iasConfiguration.getClientId());
+        URI discoveryUri = iasConfiguration.getUrl().resolve(OidcConfigurationService.DISCOVERY_ENDPOINT_DEFAULT);
+        keyManager.prefetch(() -> new DefaultOidcConfigurationService().retrieveEndpoints(discoveryUri).getJwksUri(),
+                params);
+    }
+
+    private static int getIntEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Invalid {}: {}, using default {}", name, value, defaultValue);
+            return defaultValue;
+        }
     }
 
     public static void sendUnauthorizedResponse(ServletResponse response, Attributes attributes) {
@@ -50,8 +123,22 @@ public class IasSecurityFilter implements Filter {
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
             throws IOException, ServletException {
         try {
-            TokenAuthenticationResult authenticationResult = iasTokenAuthenticator.validateRequest(request, response);
+            String cacheKey = tokenCacheKey(request);
+            Token cachedToken = cacheKey != null ? tokenCache.get(cacheKey) : null;
+            if (cachedToken != null) {
+                SecurityContext.setToken(cachedToken);
+                chain.doFilter(request, response);
+                return;
+            }
+
+            // the token keys are only fetched inline if the key of the token is unknown
+            TokenAuthenticationResult authenticationResult = keyManager.withKeyId(keyIdOf(request),
+                    () -> iasTokenAuthenticator.validateRequest(request, response));
             if (authenticationResult.isAuthenticated()) {
+                // only successfully validated tokens are cached
+                if (cacheKey != null && authenticationResult.getToken() != null) {
+                    tokenCache.put(cacheKey, authenticationResult.getToken());
+                }
                 chain.doFilter(request, response);
             } else {
                 sendUnauthenticatedResponse(response, authenticationResult.getUnauthenticatedReason());
@@ -61,6 +148,27 @@ public class IasSecurityFilter implements Filter {
         }
     }
 
+    /**
+     * @return the key of the request's credentials or null if the token cache is disabled or there is no token
+     */
+    private String tokenCacheKey(ServletRequest request) {
+        if (tokenCache == null || !(request instanceof HttpServletRequest httpServletRequest)) {
+            return null;
+        }
+        String authorization = httpServletRequest.getHeader("Authorization");
+        if (authorization == null || authorization.isEmpty()) {
+            return null;
+        }
+        return TokenValidationCache.keyOf(authorization, httpServletRequest.getHeader(CLIENT_CERTIFICATE_HEADER));
+    }
+
+    private static String keyIdOf(ServletRequest request) {
+        if (!(request instanceof HttpServletRequest httpServletRequest)) {
+            return null;
+        }
+        return JwksKeyManager.keyIdOf(httpServletRequest.getHeader("Authorization"));
+    }
+
     private void sendUnauthenticatedResponse(ServletResponse response, String unauthenticatedReason) {
         if (response instanceof HttpServletResponse httpServletResponse) {
             try {
@@ -74,6 +182,10 @@ public class IasSecurityFilter implements Filter {
 
     @Override
     public void destroy() {
+        if (tokenCache != null) {
+            LOGGER.info("Token validation cache statistics: {}", tokenCache);
+        }
+        keyManager.close();
         SecurityContext.clearToken();
     }
 }
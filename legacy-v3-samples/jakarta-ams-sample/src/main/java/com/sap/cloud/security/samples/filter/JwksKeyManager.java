@@ -0,0 +1,290 @@
+/*
+ * SPDX-FileCopyrightText: 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.sap.cloud.security.samples.filter;
+
+import com.sap.cloud.security.json.DefaultJsonObject;
+import com.sap.cloud.security.token.SapIdToken;
+import com.sap.cloud.security.token.TokenHeader;
+import com.sap.cloud.security.xsuaa.client.OAuth2ServiceException;
+import com.sap.cloud.security.xsuaa.client.OAuth2TokenKeyService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * {@link OAuth2TokenKeyService} that keeps the JSON Web Key Sets (JWKS) of the token issuers in memory and refreshes
+ * them in the background.
+ *
+ * <p>
+ * Requests of the token validation are served from memory. Only a token with a {@code kid} that is not in the key set
+ * in memory fetches the current key set inline, see {@link #withKeyId(String, Supplier)}, at most once per minimum
+ * interval; concurrent requests share one fetch. If the fetch fails, the last fetched key set is served. Key sets that
+ * have not been requested for a maximum idle time are dropped instead of refreshed.
+ */
+public class JwksKeyManager implements OAuth2TokenKeyService, AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(JwksKeyManager.class);
+    private static final Duration PREFETCH_RETRY_DELAY = Duration.ofSeconds(2);
+    private static final Duration MAX_PREFETCH_RETRY_DELAY = Duration.ofMinutes(5);
+    private static final String BEARER = "Bearer ";
+    public static final Duration DEFAULT_MIN_FETCH_INTERVAL = Duration.ofSeconds(5);
+    public static final Duration DEFAULT_MAX_IDLE = Duration.ofHours(1);
+
+    private final OAuth2TokenKeyService delegate;
+    private final long minFetchIntervalNanos;
+    private final long maxIdleNanos;
+    private final Map<JwksKey, KeySet> keySets = new ConcurrentHashMap<>();
+    private final Map<JwksKey, CompletableFuture<String>> fetches = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final ThreadLocal<String> expectedKeyId = new ThreadLocal<>();
+
+    /**
+     * @param delegate        service that fetches key sets from the identity service
+     * @param refreshInterval interval of the background refresh
+     */
+    public JwksKeyManager(OAuth2TokenKeyService delegate, Duration refreshInterval) {
+        this(delegate, refreshInterval, DEFAULT_MIN_FETCH_INTERVAL, DEFAULT_MAX_IDLE);
+    }
+
+    /**
+     * @param delegate         service that fetches key sets from the identity service
+     * @param refreshInterval  interval of the background refresh
+     * @param minFetchInterval minimum time between two fetches of a key set that are triggered by requests
+     * @param maxIdle          time after its last request after which a key set is dropped
+     */
+    public JwksKeyManager(OAuth2TokenKeyService delegate, Duration refreshInterval, Duration minFetchInterval,
+            Duration maxIdle) {
+        this.delegate = delegate;
+        this.minFetchIntervalNanos = minFetchInterval.toNanos();
+        this.maxIdleNanos = maxIdle.toNanos();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "jwks-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = refreshInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::refreshAll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String retrieveTokenKeys(URI tokenKeysEndpointUri, Map<String, String> params)
+            throws OAuth2ServiceException {
+        JwksKey key = JwksKey.of(tokenKeysEndpointUri, params);
+        KeySet keySet = keySets.get(key);
+        if (keySet == null) {
+            return fetch(key);
+        }
+
+        long now = System.nanoTime();
+        keySet.lastUsed = now;
+        String keyId = expectedKeyId.get();
+        if (keyId == null || keySet.keyIds.contains(keyId) || now - keySet.lastFetch < minFetchIntervalNanos) {
+            // the background refresh keeps the key set current, only an unknown kid is worth a fetch
+            return keySet.keys;
+        }
+        try {
+            return fetch(key);
+        } catch (OAuth2ServiceException | RuntimeException e) {
+            LOG.warn("Failed to fetch token keys from {}, serving the previous keys: {}", key.uri(), e.getMessage());
+            return keySet.keys;
+        }
+    }
+
+    /**
+     * Fetch a key set in the background, retrying until it succeeds with a delay that doubles after each failure, up
+     * to five minutes
+     *
+     * @param tokenKeysEndpoint resolves the token keys endpoint, e.g. by OpenID Connect discovery, and is called again
+     *                          on retries
+     * @return future that completes once the key set is available
+     */
+    public CompletableFuture<Void> prefetch(Callable<URI> tokenKeysEndpoint, Map<String, String> params) {
+        CompletableFuture<Void> prefetched = new CompletableFuture<>();
+        scheduler.execute(() -> prefetch(tokenKeysEndpoint, params, prefetched, PREFETCH_RETRY_DELAY));
+        return prefetched;
+    }
+
+    private void prefetch(Callable<URI> tokenKeysEndpoint, Map<String, String> params,
+            CompletableFuture<Void> prefetched, Duration retryDelay) {
+        if (prefetched.isDone()) {
+            return; // e.g. cancelled
+        }
+        try {
+            URI uri = tokenKeysEndpoint.call();
+            fetch(JwksKey.of(uri, params));
+            LOG.info("Prefetched token keys from {}", uri);
+            prefetched.complete(null);
+        } catch (Exception e) {
+            LOG.warn("Failed to prefetch token keys, retrying in {}s: {}", retryDelay.toSeconds(), e.getMessage());
+            // back off exponentially, requests fetch the key set themselves in the meantime
+            Duration nextDelay = retryDelay.multipliedBy(2);
+            Duration next = nextDelay.compareTo(MAX_PREFETCH_RETRY_DELAY) < 0 ? nextDelay : MAX_PREFETCH_RETRY_DELAY;
+            scheduler.schedule(() -> prefetch(tokenKeysEndpoint, params, prefetched, next), retryDelay.toMillis(),
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Run a token validation that fetches the key set inline only if it does not contain the key of the token, e.g.
+     * after the identity service rotated its keys. Otherwise the key set in memory is served.
+     *
+     * @param keyId      {@code kid} of the token, see {@link #keyIdOf(String)}, or null if unknown
+     * @param validation token validation that calls this service
+     */
+    public <T> T withKeyId(String keyId, Supplier<T> validation) {
+        expectedKeyId.set(keyId);
+        try {
+            return validation.get();
+        } finally {
+            expectedKeyId.remove();
+        }
+    }
+
+    /**
+     * @return the {@code kid} in the header of the bearer token of an Authorization header, or null if there is none
+     */
+    public static String keyIdOf(String authorization) {
+        if (authorization == null || !authorization.regionMatches(true, 0, BEARER, 0, BEARER.length())) {
+            return null;
+        }
+        try {
+            // decodes the token without validating it
+            return new SapIdToken(authorization.substring(BEARER.length()).trim())
+                    .getHeaderParameterAsString(TokenHeader.KEY_ID);
+        } catch (RuntimeException e) {
+            return null; // malformed tokens are rejected by the validation
+        }
+    }
+
+    /**
+     * Fetch a key set from the delegate. Concurrent calls for the same key set share one fetch.
+     */
+    private String fetch(JwksKey key) throws OAuth2ServiceException {
+        CompletableFuture<String> fetch = new CompletableFuture<>();
+        CompletableFuture<String> running = fetches.putIfAbsent(key, fetch);
+        if (running != null) {
+            return await(running);
+        }
+
+        try {
+            KeySet previous = keySets.get(key);
+            if (previous != null) {
+                previous.lastFetch = System.nanoTime();
+            }
+            String keys = delegate.retrieveTokenKeys(key.uri(), key.params());
+            if (keys == null) {
+                throw new OAuth2ServiceException("No token keys returned from " + key.uri());
+            }
+            keySets.compute(key, (k, keySet) -> keySet == null ? new KeySet(keys) : keySet.update(keys));
+            fetch.complete(keys);
+            return keys;
+        } catch (OAuth2ServiceException | RuntimeException e) {
+            fetch.completeExceptionally(e);
+            throw e;
+        } finally {
+            fetches.remove(key, fetch);
+        }
+    }
+
+    private static String await(CompletableFuture<String> fetch) throws OAuth2ServiceException {
+        try {
+            return fetch.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof OAuth2ServiceException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OAuth2ServiceException("Interrupted while waiting for token keys");
+        }
+    }
+
+    private void refreshAll() {
+        long now = System.nanoTime();
+        for (Map.Entry<JwksKey, KeySet> entry : keySets.entrySet()) {
+            JwksKey key = entry.getKey();
+            if (now - entry.getValue().lastUsed > maxIdleNanos) {
+                keySets.remove(key, entry.getValue());
+                LOG.debug("Dropped token keys from {} that were not requested recently", key.uri());
+                continue;
+            }
+            try {
+                fetch(key);
+            } catch (OAuth2ServiceException | RuntimeException e) {
+                LOG.warn("Failed to refresh token keys from {}, serving the previous keys: {}", key.uri(),
+                        e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return number of key sets in memory
+     */
+    public int size() {
+        return keySets.size();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private record JwksKey(URI uri, Map<String, String> params) {
+        static JwksKey of(URI uri, Map<String, String> params) {
+            // params may contain null values, which Map.copyOf rejects
+            return new JwksKey(uri, params == null ? Map.of() : Collections.unmodifiableMap(new HashMap<>(params)));
+        }
+    }
+
+    private static final class KeySet {
+        volatile String keys;
+        volatile Set<String> keyIds;
+        volatile long lastFetch;
+        volatile long lastUsed;
+
+        KeySet(String keys) {
+            update(keys);
+            this.lastUsed = lastFetch;
+        }
+
+        KeySet update(String keys) {
+            this.keyIds = keyIdsOf(keys);
+            this.keys = keys;
+            this.lastFetch = System.nanoTime();
+            return this;
+        }
+
+        private static Set<String> keyIdsOf(String keys) {
+            try {
+                return new DefaultJsonObject(keys).getJsonObjects("keys").stream()
+                        .map(key -> key.getAsString(TokenHeader.KEY_ID))
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toUnmodifiableSet());
+            } catch (RuntimeException e) {
+                return Set.of(); // every kid is unknown, so requests fetch the key set again
+            }
+        }
+    }
+}
@@ -8,41 +8,77 @@ package com.sap.cloud.security.samples.filter;
 import com.sap.cloud.security.ams.dcl.client.pdp.PolicyDecisionPoint;
 import com.sap.cloud.security.ams.logging.PolicyEvaluationV2AuditLogger;
 import com.sap.cloud.security.config.Environments;
+import com.sap.cloud.security.samples.audit.AsyncAuditLogListener;
+import com.sap.cloud.security.samples.audit.AsyncAuditLogListener.OverflowPolicy;
 import com.sap.xs.audit.api.exception.AuditLogException;
 import com.sap.xs.audit.api.v2.AuditLogMessageFactory;
 import com.sap.xs.audit.api.v2.AuditedDataSubject;
 import com.sap.xs.audit.client.impl.v2.AuditLogMessageFactoryImpl;
 import jakarta.servlet.*;
 import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.annotation.WebInitParam;
 import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 
 import java.io.IOException;
+import java.nio.file.Path;
 
 import static com.sap.cloud.security.ams.factory.AmsPolicyDecisionPointFactory.DEFAULT;
 import static com.sap.cloud.security.ams.logging.PolicyEvaluationV2AuditLogger.MDC_SAP_PASSPORT;
 
-@WebFilter(filterName = "ams-audit-logging", urlPatterns = "/app/*")
+/**
+ * Writes audit logs for policy evaluations. The audit log messages are written asynchronously by an
+ * {@link AsyncAuditLogListener}, configured with the init parameters of this filter:
+ * <ul>
+ * <li>auditLogQueueCapacity: maximum number of policy evaluations waiting to be written</li>
+ * <li>auditLogBatchSize: maximum number of audit log messages written per wakeup of the background thread</li>
+ * <li>auditLogOverflowPolicy: BLOCK, DROP_OLDEST or SPILL_TO_FILE when the queue is full</li>
+ * <li>auditLogSpillFile: local file for SPILL_TO_FILE, overridden by the environment variable
+ * {@value #SPILL_FILE_ENV}. The file is not replayed on startup, see {@link AsyncAuditLogListener}.</li>
+ * </ul>
+ */
+@WebFilter(filterName = "ams-audit-logging", urlPatterns = "/app/*", initParams = {
+        @WebInitParam(name = "auditLogQueueCapacity", value = "10000"),
+        @WebInitParam(name = "auditLogBatchSize", value = "100"),
+        @WebInitParam(name = "auditLogOverflowPolicy", value = "BLOCK"),
+        @WebInitParam(name = "auditLogSpillFile", value = "audit-log-overflow.log") })
 public class PolicyDecisionAuditLogFilter implements Filter {
     private static final Logger LOGGER = LoggerFactory.getLogger(PolicyDecisionAuditLogFilter.class);
+    static final String SPILL_FILE_ENV = "AUDIT_LOG_SPILL_FILE";
     private final PolicyDecisionPoint policyDecisionPoint;
     PolicyEvaluationV2AuditLogger auditLogger;
     AuditLogMessageFactory auditLogFactory;
+    AsyncAuditLogListener<?> asyncAuditLogger;
 
     public PolicyDecisionAuditLogFilter() {
         policyDecisionPoint = PolicyDecisionPoint.create(DEFAULT);
         try {
             auditLogFactory = new AuditLogMessageFactoryImpl();
             auditLogger = new PolicyEvaluationV2AuditLogger(auditLogFactory, getSubjectOfAmsData());
-            policyDecisionPoint.registerListener(auditLogger);
-            LOGGER.debug("Successfully registered listener to write audit logs for policy evaluations.");
         } catch (AuditLogException e) {
             throw new IllegalStateException("Unable to initialize AuditLogMessageFactoryImpl", e);
         }
     }
 
+    @Override
+    public void init(FilterConfig filterConfig) {
+        int capacity = Integer.parseInt(filterConfig.getInitParameter("auditLogQueueCapacity"));
+        int batchSize = Integer.parseInt(filterConfig.getInitParameter("auditLogBatchSize"));
+        OverflowPolicy overflowPolicy = OverflowPolicy.valueOf(filterConfig.getInitParameter("auditLogOverflowPolicy"));
+        String spillFileEnv = System.getenv(SPILL_FILE_ENV);
+        Path spillFile = Path.of(spillFileEnv != null && !spillFileEnv.isEmpty() ? spillFileEnv
+                : filterConfig.getInitParameter("auditLogSpillFile"));
+
+        var listener = new AsyncAuditLogListener<>(auditLogger, capacity, batchSize, overflowPolicy, spillFile);
+        policyDecisionPoint.registerListener(listener);
+        asyncAuditLogger = listener;
+        LOGGER.debug("Successfully registered listener to write audit logs for policy evaluations asynchronously "
+                + "(capacity: {}, batch size: {}, overflow policy: {}, spill file: {}).", capacity, batchSize,
+                overflowPolicy, spillFile);
+    }
+
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
             throws IOException, ServletException {
@@ -52,7 +88,14 @@ public class PolicyDecisionAuditLogFilter implements Filter {
         try {
             chain.doFilter(request, response);
         } finally {
-            MDC.remove("sap-passport");
+            MDC.remove(MDC_SAP_PASSPORT);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (asyncAuditLogger != null) {
+            asyncAuditLogger.close();
         }
     }
 
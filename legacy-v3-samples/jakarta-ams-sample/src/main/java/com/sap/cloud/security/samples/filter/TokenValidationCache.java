@@ -0,0 +1,129 @@
+/*
+ * SPDX-FileCopyrightText: 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.sap.cloud.security.samples.filter;
+
+import com.sap.cloud.security.token.Token;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of validated tokens with least-recently-used eviction.
+ *
+ * <p>
+ * Entries are keyed by a SHA-256 hash of the credentials of a request, so raw tokens are not kept as keys,
+ * and expire with the {@code exp} claim of their token. Hits, misses and evictions are counted.
+ */
+public class TokenValidationCache {
+    private final int maxSize;
+    private final Map<String, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public TokenValidationCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > TokenValidationCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @param authorization     Authorization header of the request
+     * @param clientCertificate client certificate of the request, as tokens may be bound to it, or null
+     * @return cache key of the credentials
+     */
+    public static String keyOf(String authorization, String clientCertificate) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(authorization.getBytes(StandardCharsets.UTF_8));
+            if (clientCertificate != null) {
+                digest.update((byte) '\n');
+                digest.update(clientCertificate.getBytes(StandardCharsets.UTF_8));
+            }
+            return Base64.getEncoder().encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * @return the validated token or null if it is not cached or has expired
+     */
+    public Token get(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && !Instant.now().isBefore(entry.expiresAt())) {
+                entries.remove(key);
+                entry = null;
+            }
+
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.token();
+        }
+    }
+
+    /**
+     * Cache a validated token until its {@code exp} claim. Tokens without expiration are not cached.
+     */
+    public void put(String key, Token token) {
+        Instant expiresAt = token.getExpiration();
+        if (expiresAt == null || !Instant.now().isBefore(expiresAt)) {
+            return;
+        }
+        synchronized (entries) {
+            entries.put(key, new Entry(token, expiresAt));
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "TokenValidationCache{size=" + size() + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+                + ", evictions=" + getEvictionCount() + "}";
+    }
+
+    private record Entry(Token token, Instant expiresAt) {
+    }
+}
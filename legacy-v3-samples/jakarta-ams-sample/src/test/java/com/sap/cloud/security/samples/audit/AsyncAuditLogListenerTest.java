@@ -0,0 +1,139 @@
+/*
+ * SPDX-FileCopyrightText: 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.sap.cloud.security.samples.audit;
+
+import com.sap.cloud.security.samples.audit.AsyncAuditLogListener.OverflowPolicy;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.MDC;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static com.sap.cloud.security.ams.logging.PolicyEvaluationV2AuditLogger.MDC_SAP_PASSPORT;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncAuditLogListenerTest {
+
+  private final List<String> written = new CopyOnWriteArrayList<>();
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  @AfterEach
+  void tearDown() {
+    release.countDown();
+    MDC.remove(MDC_SAP_PASSPORT);
+  }
+
+  @Test
+  void close_writesQueuedEntriesWithTheirSapPassport() {
+    AsyncAuditLogListener<String> cut =
+        new AsyncAuditLogListener<>(e -> written.add(e + "@" + MDC.get(MDC_SAP_PASSPORT)), 10, 2,
+            OverflowPolicy.BLOCK, null);
+
+    MDC.put(MDC_SAP_PASSPORT, "passport-1");
+    cut.accept("a");
+    MDC.put(MDC_SAP_PASSPORT, "passport-2");
+    cut.accept("b");
+    MDC.remove(MDC_SAP_PASSPORT);
+    cut.accept("c");
+    cut.close();
+
+    assertEquals(List.of("a@passport-1", "b@passport-2", "c@null"), written);
+  }
+
+  @Test
+  void acceptAfterClose_writesEntry() {
+    AsyncAuditLogListener<String> cut =
+        new AsyncAuditLogListener<>(written::add, 10, 2, OverflowPolicy.BLOCK, null);
+    cut.accept("a");
+    cut.close();
+
+    cut.accept("b");
+
+    assertEquals(List.of("a", "b"), written);
+  }
+
+  @Test
+  void fullQueue_dropOldest_discardsOldestEntries() throws InterruptedException {
+    AsyncAuditLogListener<String> cut =
+        new AsyncAuditLogListener<>(blockingDelegate(), 2, 1, OverflowPolicy.DROP_OLDEST, null);
+    cut.accept("blocked");
+    awaitWritten(1);
+
+    for (String entry : List.of("a", "b", "c", "d")) {
+      cut.accept(entry);
+    }
+    release.countDown();
+    cut.close();
+
+    assertEquals(List.of("blocked", "c", "d"), written);
+    assertEquals(2, cut.getDroppedCount());
+  }
+
+  @Test
+  void fullQueue_spillToFile_writesOneJsonObjectPerLine(@TempDir Path dir)
+      throws InterruptedException, IOException {
+    Path spillFile = dir.resolve("spill").resolve("audit-log-overflow.log");
+    AsyncAuditLogListener<String> cut =
+        new AsyncAuditLogListener<>(blockingDelegate(), 1, 1, OverflowPolicy.SPILL_TO_FILE,
+            spillFile);
+    cut.accept("blocked");
+    awaitWritten(1);
+
+    cut.accept("queued");
+    MDC.put(MDC_SAP_PASSPORT, "passport-1");
+    cut.accept("spilled\nwith\ttabs");
+    release.countDown();
+    cut.close();
+
+    List<String> lines = Files.readAllLines(spillFile);
+    assertEquals(1, lines.size());
+    JSONObject entry = new JSONObject(lines.get(0));
+    assertEquals("spilled\nwith\ttabs", entry.getString("evaluation"));
+    assertEquals("passport-1", entry.getString("sapPassport"));
+    assertTrue(entry.has("timestamp"));
+    assertEquals(1, cut.getSpilledCount());
+    assertEquals(List.of("blocked", "queued"), written);
+  }
+
+  @Test
+  void spillToFile_withoutFile_isRejected() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new AsyncAuditLogListener<String>(written::add, 1, 1, OverflowPolicy.SPILL_TO_FILE,
+            null));
+  }
+
+  /**
+   * Delegate that records each entry and then blocks until the test releases it, so the queue
+   * fills up
+   */
+  private Consumer<String> blockingDelegate() {
+    return entry -> {
+      written.add(entry);
+      try {
+        release.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    };
+  }
+
+  private void awaitWritten(int count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5_000;
+    while (written.size() < count && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(count, written.size());
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * SPDX-FileCopyrightText: 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.sap.cloud.security.samples.filter;
+
+import com.sap.cloud.security.servlet.IasTokenAuthenticator;
+import com.sap.cloud.security.servlet.TokenAuthenticationResult;
+import com.sap.cloud.security.token.Token;
+import com.sap.cloud.security.xsuaa.client.OAuth2TokenKeyService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class IasSecurityFilterTest {
+  private IasTokenAuthenticator authenticator;
+  private IasSecurityFilter filter;
+  private FilterChain chain;
+  private HttpServletResponse response;
+
+  @BeforeEach
+  void setUp() {
+    authenticator = mock(IasTokenAuthenticator.class);
+    chain = mock(FilterChain.class);
+    response = mock(HttpServletResponse.class);
+    JwksKeyManager keyManager =
+        new JwksKeyManager(mock(OAuth2TokenKeyService.class), Duration.ofMinutes(5));
+    filter = new IasSecurityFilter(authenticator, new TokenValidationCache(10), keyManager);
+  }
+
+  @AfterEach
+  void tearDown() {
+    filter.destroy();
+  }
+
+  @Test
+  void validToken_isValidatedOnce() throws Exception {
+    when(authenticator.validateRequest(any(), any())).thenReturn(authenticated());
+
+    filter.doFilter(request("Bearer token", null), response, chain);
+    filter.doFilter(request("Bearer token", null), response, chain);
+
+    verify(authenticator, times(1)).validateRequest(any(), any());
+    verify(chain, times(2)).doFilter(any(), any());
+  }
+
+  @Test
+  void differentClientCertificate_isValidatedAgain() throws Exception {
+    when(authenticator.validateRequest(any(), any())).thenReturn(authenticated());
+
+    filter.doFilter(request("Bearer token", "certificate-1"), response, chain);
+    filter.doFilter(request("Bearer token", "certificate-2"), response, chain);
+
+    verify(authenticator, times(2)).validateRequest(any(), any());
+  }
+
+  @Test
+  void failedValidation_isNotCached() throws Exception {
+    TokenAuthenticationResult unauthenticated = mock(TokenAuthenticationResult.class);
+    when(authenticator.validateRequest(any(), any()))
+        .thenReturn(unauthenticated)
+        .thenReturn(authenticated());
+
+    filter.doFilter(request("Bearer token", null), response, chain);
+    filter.doFilter(request("Bearer token", null), response, chain);
+
+    verify(response).sendError(HttpServletResponse.SC_UNAUTHORIZED);
+    verify(authenticator, times(2)).validateRequest(any(), any());
+    verify(chain, times(1)).doFilter(any(), any());
+  }
+
+  private static HttpServletRequest request(String authorization, String clientCertificate) {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getHeader("Authorization")).thenReturn(authorization);
+    when(request.getHeader("x-forwarded-client-cert")).thenReturn(clientCertificate);
+    return request;
+  }
+
+  private static TokenAuthenticationResult authenticated() {
+    Token token = TokenValidationCacheTest.token(Instant.now().plusSeconds(600));
+    TokenAuthenticationResult result = mock(TokenAuthenticationResult.class);
+    when(result.isAuthenticated()).thenReturn(true);
+    when(result.getToken()).thenReturn(token);
+    return result;
+  }
+}
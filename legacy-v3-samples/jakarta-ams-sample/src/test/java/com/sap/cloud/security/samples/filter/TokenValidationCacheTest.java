@@ -0,0 +1,73 @@
+/*
+ * SPDX-FileCopyrightText: 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.sap.cloud.security.samples.filter;
+
+import com.sap.cloud.security.token.Token;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TokenValidationCacheTest {
+
+  @Test
+  void validToken_isCachedUntilExpiration() throws InterruptedException {
+    TokenValidationCache cache = new TokenValidationCache(10);
+    Token token = token(Instant.now().plusSeconds(2));
+
+    cache.put("key", token);
+    assertSame(token, cache.get("key"));
+
+    Thread.sleep(2_100);
+    assertNull(cache.get("key"));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  void expiredToken_isNotCached() {
+    TokenValidationCache cache = new TokenValidationCache(10);
+
+    cache.put("key", token(Instant.now().minusSeconds(1)));
+    cache.put("other", token(null));
+
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  void differentClientCertificate_hasDifferentKey() {
+    String key = TokenValidationCache.keyOf("Bearer token", "certificate-1");
+
+    assertEquals(key, TokenValidationCache.keyOf("Bearer token", "certificate-1"));
+    assertNotEquals(key, TokenValidationCache.keyOf("Bearer token", "certificate-2"));
+    assertNotEquals(key, TokenValidationCache.keyOf("Bearer token", null));
+    assertNotEquals(key, TokenValidationCache.keyOf("Bearer other", "certificate-1"));
+  }
+
+  @Test
+  void leastRecentlyUsedToken_isEvicted() {
+    TokenValidationCache cache = new TokenValidationCache(2);
+    Instant expiration = Instant.now().plusSeconds(600);
+    cache.put("alice", token(expiration));
+    cache.put("bob", token(expiration));
+    cache.get("alice");
+
+    cache.put("carol", token(expiration));
+
+    assertNotNull(cache.get("alice"));
+    assertNull(cache.get("bob"));
+    assertNotNull(cache.get("carol"));
+    assertEquals(1, cache.getEvictionCount());
+  }
+
+  static Token token(Instant expiration) {
+    Token token = mock(Token.class);
+    when(token.getExpiration()).thenReturn(expiration);
+    return token;
+  }
+}